@@ -0,0 +1,34 @@
+package mcmgnetwork.mcmg_networkhandler;
+
+import com.velocitypowered.api.proxy.ServerConnection;
+import mcmgnetwork.mcmg_networkhandler.protocols.PluginMessageReader;
+import mcmgnetwork.mcmg_networkhandler.utilities.ActiveServerUtil;
+import mcmgnetwork.mcmg_networkhandler.utilities.InstanceState;
+
+/**
+ * Description: <p>
+ *  Handles the heartbeats that backend servers push to the proxy on a fixed interval and whenever a player joins or
+ *  leaves, keeping active server information current without pinging each server.
+ *
+ *  <p>Author(s): Miles Bovero
+ *  <p>Date Created: 10/17/26
+ */
+public class HeartbeatHandler
+{
+    /**
+     * Records a SERVER_HEARTBEAT in the active server information of the server that sent it.
+     * @param source The connection of the server that sent the heartbeat
+     * @param in The PluginMessageReader containing the server's online and maximum player counts, ticks per second (in
+     *           hundredths), and lifecycle state
+     */
+    public static void handleServerHeartbeat(ServerConnection source, PluginMessageReader in)
+    {
+        // Read/store remaining plugin message data
+        int onlinePlayerCount = in.readVarInt();
+        int maximumPlayerCount = in.readVarInt();
+        double tps = in.readVarInt() / 100.0;
+        InstanceState state = InstanceState.fromId(in.readVarInt());
+
+        ActiveServerUtil.recordHeartbeat(source.getServerInfo().getName(), onlinePlayerCount, maximumPlayerCount, tps, state);
+    }
+}
@@ -1,22 +1,22 @@
 package mcmgnetwork.mcmg_networkhandler;
 
-import com.google.common.io.ByteArrayDataInput;
-import com.google.common.io.ByteArrayDataOutput;
-import com.google.common.io.ByteStreams;
-import com.velocitypowered.api.proxy.server.RegisteredServer;
-import mcmgnetwork.mcmg_networkhandler.listeners.PluginMessageHandler;
-import mcmgnetwork.mcmg_networkhandler.protocols.MessageTypes;
+import com.velocitypowered.api.proxy.ServerConnection;
+import mcmgnetwork.mcmg_networkhandler.protocols.PluginMessageReader;
 import mcmgnetwork.mcmg_networkhandler.protocols.ServerStatuses;
 import mcmgnetwork.mcmg_networkhandler.utilities.ActiveServerUtil;
+import mcmgnetwork.mcmg_networkhandler.utilities.DemandForecastUtil;
 import mcmgnetwork.mcmg_networkhandler.utilities.ServerInitializeUtil;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 /**
  * Description: <p>
- *  Handles the requested transfers of a player across servers in the MCMG network. Accounts for offline vs. online
- *  server instances, potential initialization of new servers, and updates the requesting player on the status of the
- *  server transfer.
+ *  Handles the requested transfers of players across servers in the MCMG network. Accounts for offline vs. online
+ *  server instances, potential initialization of new servers, and updates the requesting server on the status of the
+ *  server transfer. Transfers may be requested one player at a time, or as a batch of parties (e.g. at the end of a
+ *  match) that is placed as a single decision.
  *
  *  <p>Author(s): Miles Bovero
  *  <p>Date Created: 5/12/24
@@ -24,57 +24,105 @@ import java.util.concurrent.CompletableFuture;
 public class LobbyTransferHandler
 {
     /**
-     * Provided data containing a player name and server type, this method determines if there is a transferable lobby
-     * server of the specified type. If one exists and is operating, the specified player is sent there. If no such
-     * server instance is active, an attempt to start a new server is made. In any case, a Lobby Transfer Response is
-     * sent to back to the network to update the requesting player on the status of the requested transfer.
-     * @param in The ByteArrayDataInput containing a player name and server type (recognized by the Velocity proxy
-     *           server's MCMG_NetworkHandler plugin) that the specified player may be transferred to
+     * Handles a LOBBY_TRANSFER_REQUEST for a single player (see handleTransferBatch).
+     * @param source The connection of the server that sent the request
+     * @param in The PluginMessageReader containing a correlation id, a player name, and a server type (recognized by
+     *           the Velocity proxy server's MCMG_NetworkHandler plugin) that the specified player may be transferred to
      */
-    public static void handleLobbyTransferRequest(ByteArrayDataInput in) {
+    public static void handleLobbyTransferRequest(ServerConnection source, PluginMessageReader in)
+    {
         // Read/store remaining plugin message data
-        String playerName = in.readUTF();
-        String serverType = in.readUTF();
+        int correlationId = in.readVarInt();
+        String playerName = in.readString();
+        String serverType = in.readString();
 
-        // Get updated information on all network servers
-        CompletableFuture<Void> serverInfoFuture = ActiveServerUtil.getServerInfoFuture();
+        handleTransferBatch(TransferBatch.forPlayer(source, correlationId, serverType, playerName));
+    }
 
-        // Wait for all server pings to complete, then run remaining code:
-        serverInfoFuture.thenRun(() ->
-        {
-            // Track server status (initially assumed to be online & transferable)
-            String serverStatus = ServerStatuses.TRANSFERABLE;
+    /**
+     * Handles a LOBBY_TRANSFER_BATCH_REQUEST for several parties of players (see handleTransferBatch).
+     * @param source The connection of the server that sent the request
+     * @param in The PluginMessageReader containing a correlation id, a server type (recognized by the Velocity proxy
+     *           server's MCMG_NetworkHandler plugin), and the player names of each party's members
+     */
+    public static void handleLobbyTransferBatchRequest(ServerConnection source, PluginMessageReader in)
+    {
+        // Read/store remaining plugin message data
+        int correlationId = in.readVarInt();
+        String serverType = in.readString();
 
-            // Attempt to identify a target server to transfer the player to
-            String serverName = ActiveServerUtil.findTransferableServerName(serverType);
+        int partyCount = in.readCount();
+        List<List<String>> parties = new ArrayList<>(partyCount);
+        for (int i=0; i<partyCount; i++)
+        {
+            int memberCount = in.readCount();
+            List<String> party = new ArrayList<>(memberCount);
+            for (int j=0; j<memberCount; j++)
+                party.add(in.readString());
 
-            // If no transferable server could be found, attempt to start a new one
-            if (serverName.isEmpty())
-                serverStatus = ServerInitializeUtil.startNewServer(serverType);   // Store updated server status
+            parties.add(party);
+        }
 
-            // Send a response to the network
-            sendLobbyTransferResponse(serverStatus, playerName, serverName);
-        });
+        handleTransferBatch(TransferBatch.forParties(source, correlationId, serverType, parties));
     }
 
     /**
-     * Sends a LOBBY_TRANSFER_RESPONSE with the provided parameters to the network using plugin messaging.
-     * @param serverStatus The ServerStatus of the lobby server type provided in the request
-     * @param playerName The name of the player requested to be transferred
-     * @param serverName The server instance name to transfer the specified player to
+     * Determines if there are transferable lobby servers of the batch's server type with room for every party. If so,
+     * the parties are sent there. If not, an attempt to start a new server is made; while that server initializes, the
+     * batch is held by the PendingTransferManager. In any case, a response is eventually sent back to the requesting
+     * server to update it on the status of the requested transfer.
+     * @param batch The requested transfer
      */
-    private static void sendLobbyTransferResponse(String serverStatus, String playerName, String serverName)
+    private static void handleTransferBatch(TransferBatch batch)
     {
-        // Format return message
-        ByteArrayDataOutput out = ByteStreams.newDataOutput();
-        out.writeUTF(MessageTypes.LOBBY_TRANSFER_RESPONSE);
-        out.writeUTF(serverStatus);
-        out.writeUTF(playerName);
-        out.writeUTF(serverName);
-        // Send response message
-        for (RegisteredServer server : MCMG_NetworkHandler.getProxy().getAllServers())
-            server.sendPluginMessage(PluginMessageHandler.getMCMG_IDENTIFIER(), out.toByteArray());
-
-        MCMG_NetworkHandler.getLogger().info("The MCMG_NetworkHandler is returning the requested server's status."); //TODO remove
+        String serverType = batch.getServerType();
+
+        // A request without any parties needs no server
+        if (batch.isEmpty())
+        {
+            batch.sendResponse(ServerStatuses.TRANSFERABLE);
+            return;
+        }
+
+        // Track demand for the server type, so that new instances can be started ahead of time
+        DemandForecastUtil.recordTransferRequests(serverType, batch.getPlayerCount());
+
+        // Get recent information on all network servers (only pinging the network if the cached information is stale)
+        CompletableFuture<Void> serverInfoFuture = ActiveServerUtil.getCachedServerInfoFuture();
+
+        // Wait for server information to be available, then run remaining code:
+        serverInfoFuture.thenRun(() ->
+        {
+            // Attempt to place every party on a target server (and hold seats there for them)
+            if (batch.placeParties())
+            {
+                // The target servers may have included a warm standby instance that needs replacing
+                MinigameLobbyManager.requestWarmStandbyCheck(serverType);
+                batch.sendResponse(ServerStatuses.TRANSFERABLE);
+                return;
+            }
+
+            // A party larger than a whole instance can never be placed, so no new server would help
+            if (!batch.fitsInstanceCapacity())
+            {
+                MCMG_NetworkHandler.getLogger().warn("{} has a party larger than a single {} server.", batch, serverType);
+                batch.sendResponse(ServerStatuses.FULL);
+                return;
+            }
+
+            // If there is no room for every party, attempt to start a new server
+            ServerInitializeUtil.startNewServer(serverType).thenAccept(serverStatus ->
+            {
+                // If a new server is on its way, hold the request until it can be transferred to
+                if (serverStatus == ServerStatuses.INITIALIZING || serverStatus == ServerStatuses.BEGAN_INITIALIZATION)
+                {
+                    PendingTransferManager.queueTransfer(batch);
+                    return;
+                }
+
+                // Send a response to the requesting server
+                batch.sendResponse(serverStatus);
+            });
+        });
     }
 }
@@ -2,6 +2,7 @@ package mcmgnetwork.mcmg_networkhandler;
 
 import com.google.inject.Inject;
 import com.velocitypowered.api.event.proxy.ProxyInitializeEvent;
+import com.velocitypowered.api.event.proxy.ProxyShutdownEvent;
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.plugin.Plugin;
 import com.velocitypowered.api.plugin.annotation.DataDirectory;
@@ -9,7 +10,15 @@ import com.velocitypowered.api.proxy.ProxyServer;
 import lombok.Getter;
 import mcmgnetwork.mcmg_networkhandler.listeners.MainHubInitializer;
 import mcmgnetwork.mcmg_networkhandler.listeners.PluginMessageHandler;
+import mcmgnetwork.mcmg_networkhandler.listeners.SeatReservationListener;
+import mcmgnetwork.mcmg_networkhandler.utilities.ActiveServerUtil;
 import mcmgnetwork.mcmg_networkhandler.utilities.ConfigUtil;
+import mcmgnetwork.mcmg_networkhandler.utilities.MemoryBudgetUtil;
+import mcmgnetwork.mcmg_networkhandler.utilities.ServerInitializeUtil;
+import mcmgnetwork.mcmg_networkhandler.utilities.ServerLifecycleUtil;
+import mcmgnetwork.mcmg_networkhandler.utilities.ServerPollUtil;
+import mcmgnetwork.mcmg_networkhandler.utilities.ServerProcessUtil;
+import mcmgnetwork.mcmg_networkhandler.utilities.TemplateCloneUtil;
 import org.slf4j.Logger;
 
 import java.nio.file.Path;
@@ -55,8 +64,46 @@ public class MCMG_NetworkHandler {
         // Register event listeners
         proxy.getEventManager().register(this, new PluginMessageHandler());
         proxy.getEventManager().register(this, new MainHubInitializer());
+        proxy.getEventManager().register(this, new SeatReservationListener());
+
+        // Begin refreshing network server information in the background, sending any pending transfers after each refresh
+        ActiveServerUtil.addRefreshListener(PendingTransferManager::processPendingTransfers);
+        // Keep warm standby instances topped up as server information changes
+        ActiveServerUtil.addRefreshListener(MinigameLobbyManager::maintainWarmStandbyPools);
+        // Start instances ahead of forecasted demand
+        ActiveServerUtil.addRefreshListener(MinigameLobbyManager::scaleUpForDemand);
+        // Drain and stop instances that stay under-used
+        ActiveServerUtil.addRefreshListener(MinigameLobbyManager::scaleDownIdleServers);
+        // Refresh network server information as soon as a new instance is ready, so pending transfers reach it quickly
+        ServerLifecycleUtil.addReadyListener(serverName -> ActiveServerUtil.getServerInfoFuture());
+        ServerPollUtil.startPolling();
 
         logger.info("The MCMG_NetworkHandler plugin has successfully started!");
     }
 
+    /**
+     * Executed upon shutdown of the proxy server running this plugin. Stops any background tasks and server instances
+     * started by this plugin.
+     * @param event Ignore
+     */
+    @Subscribe
+    public void onProxyShutdown(ProxyShutdownEvent event)
+    {
+        ServerPollUtil.stopPolling();
+        ConfigUtil.stopWatchingConfig();
+
+        // Stop everything that could start, scale or provision servers before the instances themselves are stopped
+        MainHubInitializer.shutdown();
+        MinigameLobbyManager.shutdown();
+        PendingTransferManager.shutdown();
+        MemoryBudgetUtil.shutdown();
+        ServerInitializeUtil.shutdown();
+        TemplateCloneUtil.shutdown();
+        ServerLifecycleUtil.shutdown();
+
+        // Server instances launched by this plugin are owned by the proxy, so they are stopped alongside it
+        ServerProcessUtil.stopAllServers();
+        ServerProcessUtil.shutdown();
+    }
+
 }
@@ -1,9 +1,39 @@
 package mcmgnetwork.mcmg_networkhandler;
 
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import mcmgnetwork.mcmg_networkhandler.utilities.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Description: <p>
  * Responsible for initializing new lobby servers when not enough instances are active and shutting down and deleting
  * lobby servers when there are an unnecessary number of them.
+ * <p>
+ * Keeps a configured minimum number of idle, READY instances of each server type on warm standby, starting a
+ * replacement in the background as soon as a standby instance is claimed, so that new demand rarely waits on a server
+ * to boot.
+ * <p>
+ * New instances are also started ahead of demand: whenever the demand forecasted over a new instance's startup time
+ * (see DemandForecastUtil) would fill a server type past its configured target fill fraction, another instance is
+ * started, so that surges land on instances that are already running.
+ * <p>
+ * Once demand drops, instances that stay under-used for long enough are marked DRAINING (so they receive no new
+ * transfers), their players are moved onto fuller instances of the same type, and they are stopped and deleted.
+ * Scale-down waits out a cooldown after every scale-down and after any instance of the type becomes READY, and always
+ * keeps the configured minimum and warm standby instances, so that instance counts do not flap.
  *
  *  <p>Author(s): Miles Bovero
  *  <p>Date Created: 5/13/24
@@ -11,4 +41,281 @@ package mcmgnetwork.mcmg_networkhandler;
 public class MinigameLobbyManager
 {
 
+    /**
+     * Runs warm standby checks (and any resulting server starts) off of the calling thread
+     */
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(runnable ->
+    {
+        Thread thread = new Thread(runnable, "MCMG-lobby-manager");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The server types with a warm standby check waiting to run; used to avoid queueing duplicate checks
+     */
+    private static final Set<String> pendingStandbyChecks = ConcurrentHashMap.newKeySet();
+
+    /**
+     * A map of the names of READY instances that are under-used and the system time (in milliseconds) at which they
+     * became under-used
+     */
+    private static final Map<String, Long> underusedSince = new ConcurrentHashMap<>();
+
+    /**
+     * A map of server types and the system time (in milliseconds) at which an instance of that type was last drained
+     */
+    private static final Map<String, Long> lastScaleDownTimes = new ConcurrentHashMap<>();
+
+    /**
+     * Requests a warm standby check of every server type with a configured warm standby instance count.
+     */
+    public static void maintainWarmStandbyPools()
+    {
+        for (String serverType : ConfigUtil.getWarmStandbyServerTypes())
+            requestWarmStandbyCheck(serverType);
+    }
+
+    /**
+     * Requests a background check of whether the specified server type needs another warm standby instance, and if so,
+     * starts one. Should be requested whenever an instance of the server type may have been claimed.
+     * @param serverType A server type recognized by the Velocity proxy server's MCMG_NetworkHandler plugin
+     */
+    public static void requestWarmStandbyCheck(String serverType)
+    {
+        // Ignore server types without warm standby instances and server types that already have a check queued
+        if (ConfigUtil.getWarmStandbyCount(serverType) <= 0 || !pendingStandbyChecks.add(serverType))
+            return;
+
+        executor.execute(() ->
+        {
+            pendingStandbyChecks.remove(serverType);
+            maintainWarmStandby(serverType);
+        });
+    }
+
+    /**
+     * Starts a new instance of the specified server type if it has fewer idle (or starting) instances than its
+     * configured warm standby instance count.
+     * @param serverType A server type recognized by the Velocity proxy server's MCMG_NetworkHandler plugin
+     */
+    private static void maintainWarmStandby(String serverType)
+    {
+        int standbyCount = ConfigUtil.getWarmStandbyCount(serverType);
+        // Instances that are already starting will become idle standby instances once READY
+        int idleCount = ActiveServerUtil.countIdleServers(serverType)
+                + ServerLifecycleUtil.countInstances(serverType, InstanceState.STARTING);
+
+        if (idleCount >= standbyCount)
+            return;
+
+        ServerInitializeUtil.startNewServerAndAwaitReady(serverType).thenAccept(serverStatus ->
+                MCMG_NetworkHandler.getLogger().info("{} had {} of {} warm standby instances; starting another returned status \"{}\".",
+                        serverType, idleCount, standbyCount, serverStatus));
+    }
+
+    /**
+     * The current load of a server type
+     * @param playerCount The number of players on (or with reserved seats on) the server type's transferable instances
+     * @param capacity The maximum number of players of the server type's transferable and STARTING instances
+     */
+    private record ServerTypeLoad(int playerCount, int capacity) {}
+
+    /**
+     * Requests a background scale-up evaluation of every server type with tracked demand.
+     */
+    public static void scaleUpForDemand()
+    {
+        executor.execute(() ->
+        {
+            for (String serverType : DemandForecastUtil.getServerTypes())
+                scaleUpForDemand(serverType);
+        });
+    }
+
+    /**
+     * Records the current player count of the specified server type, and starts a new instance of it if its forecasted
+     * demand would fill its capacity past the configured target fill fraction.
+     * @param serverType A server type recognized by the Velocity proxy server's MCMG_NetworkHandler plugin
+     */
+    private static void scaleUpForDemand(String serverType)
+    {
+        ServerTypeLoad load = measureLoad(serverType);
+        DemandForecastUtil.recordPlayerCount(serverType, load.playerCount());
+
+        double forecastPlayerCount = DemandForecastUtil.forecastPlayerCount(serverType, load.playerCount());
+        if (forecastPlayerCount <= load.capacity() * ConfigUtil.getScaleUpFillThreshold())
+            return;
+
+        ServerInitializeUtil.startNewServer(serverType).thenAccept(serverStatus ->
+                MCMG_NetworkHandler.getLogger().info("{} is forecast to reach {} of {} players; starting another instance returned status \"{}\".",
+                        serverType, Math.round(forecastPlayerCount), load.capacity(), serverStatus));
+    }
+
+    /**
+     * @param serverType A server type recognized by the Velocity proxy server's MCMG_NetworkHandler plugin
+     * @return The current load of the specified server type
+     */
+    private static ServerTypeLoad measureLoad(String serverType)
+    {
+        int playerCount = 0;
+        int capacity = 0;
+        int instanceCapacity = 0;
+        for (ServerInfoPackage serverInfo : ActiveServerUtil.getSnapshot().getServers(serverType))
+        {
+            String serverName = serverInfo.getServerName();
+            if (!ServerLifecycleUtil.isTransferable(serverName))
+                continue;
+
+            playerCount += serverInfo.getOnlinePlayerCount() + SeatReservationUtil.getReservedSeatCount(serverName);
+            capacity += serverInfo.getMaximumPlayerCount();
+            instanceCapacity = Math.max(instanceCapacity, serverInfo.getMaximumPlayerCount());
+        }
+
+        // Instances that are still starting will add to the capacity once READY
+        capacity += ServerLifecycleUtil.countInstances(serverType, InstanceState.STARTING) * instanceCapacity;
+        return new ServerTypeLoad(playerCount, capacity);
+    }
+
+    /**
+     * Requests a background scale-down evaluation of every server type with instances started by this plugin.
+     */
+    public static void scaleDownIdleServers()
+    {
+        executor.execute(() ->
+        {
+            for (String serverType : ServerLifecycleUtil.getServerTypes())
+                scaleDownIdleServers(serverType);
+        });
+    }
+
+    /**
+     * Stops the scaling thread, discarding any queued checks so that no further servers are started or drained.
+     */
+    public static void shutdown()
+    { executor.shutdownNow(); }
+
+    /**
+     * Updates how long each READY instance of the specified server type has been under-used, and drains the emptiest
+     * instance that has been under-used for longer than the configured idle time, unless the server type is cooling
+     * down or draining it would leave fewer than the configured minimum (or warm standby) instances.
+     * @param serverType A server type recognized by the Velocity proxy server's MCMG_NetworkHandler plugin
+     */
+    private static void scaleDownIdleServers(String serverType)
+    {
+        long currentTime = System.currentTimeMillis();
+        long cooldown = ConfigUtil.getScaleDownCooldown() * 1000L;
+        long idleTime = ConfigUtil.getScaleDownIdleTime() * 1000L;
+        ServerInfoSnapshot snapshot = ActiveServerUtil.getSnapshot();
+
+        boolean coolingDown = currentTime - lastScaleDownTimes.getOrDefault(serverType, 0L) < cooldown;
+        int readyCount = 0;
+        ServerInfoPackage drainTarget = null;
+
+        for (Map.Entry<String, ServerLifecycleUtil.InstanceInfo> entry : ServerLifecycleUtil.getInstances(serverType).entrySet())
+        {
+            String serverName = entry.getKey();
+            ServerLifecycleUtil.InstanceInfo info = entry.getValue();
+            if (info.state() != InstanceState.READY)
+            {
+                underusedSince.remove(serverName);
+                continue;
+            }
+
+            readyCount++;
+            // Recently started instances mean demand was recently high
+            if (currentTime - info.stateChangeTime() < cooldown)
+                coolingDown = true;
+
+            ServerInfoPackage serverInfo = snapshot.get(serverName);
+            if (serverInfo == null || !isUnderused(serverInfo))
+            {
+                underusedSince.remove(serverName);
+                continue;
+            }
+
+            // Only instances that have been under-used for long enough may be drained
+            long underusedTime = currentTime - underusedSince.computeIfAbsent(serverName, name -> currentTime);
+            if (underusedTime < idleTime)
+                continue;
+
+            // Prefer draining the emptiest instance, then the highest numbered instance
+            if (drainTarget == null || serverInfo.getOnlinePlayerCount() < drainTarget.getOnlinePlayerCount()
+                    || (serverInfo.getOnlinePlayerCount() == drainTarget.getOnlinePlayerCount()
+                        && serverInfo.getInstanceNumber() > drainTarget.getInstanceNumber()))
+                drainTarget = serverInfo;
+        }
+
+        if (drainTarget == null || coolingDown)
+            return;
+
+        // Always keep the configured minimum number of instances, and keep warm standby instances idle
+        int warmStandbyCount = ConfigUtil.getWarmStandbyCount(serverType);
+        if (readyCount - 1 < Math.max(ConfigUtil.getMinServerTypeCount(serverType), warmStandbyCount))
+            return;
+        if (drainTarget.getOnlinePlayerCount() == 0 && ActiveServerUtil.countIdleServers(serverType) - 1 < warmStandbyCount)
+            return;
+
+        // Keep the instance if the remaining instances could not absorb the forecasted demand
+        ServerTypeLoad load = measureLoad(serverType);
+        int remainingCapacity = load.capacity() - drainTarget.getMaximumPlayerCount();
+        if (DemandForecastUtil.forecastPlayerCount(serverType, load.playerCount()) > remainingCapacity * ConfigUtil.getScaleUpFillThreshold())
+            return;
+
+        lastScaleDownTimes.put(serverType, currentTime);
+        drainServer(serverType, drainTarget.getServerName());
+    }
+
+    /**
+     * @param serverInfo The information of a server
+     * @return Whether or not the server's fill level is at or below the configured scale-down threshold
+     */
+    private static boolean isUnderused(ServerInfoPackage serverInfo)
+    {
+        if (serverInfo.getMaximumPlayerCount() <= 0)
+            return serverInfo.getOnlinePlayerCount() == 0;
+
+        return (double) serverInfo.getOnlinePlayerCount() / serverInfo.getMaximumPlayerCount() <= ConfigUtil.getScaleDownFillThreshold();
+    }
+
+    /**
+     * Drains an instance: marks it DRAINING, moves its players onto other instances of the same type, and stops and
+     * deletes it once its players have moved (or the configured drain timeout elapses). If the other instances do not
+     * have room for all of its players, the instance is returned to the READY state instead.
+     * @param serverType The server type of the instance
+     * @param serverName The name of the instance to drain
+     */
+    private static void drainServer(String serverType, String serverName)
+    {
+        underusedSince.remove(serverName);
+        ServerLifecycleUtil.markDraining(serverName);
+
+        Optional<RegisteredServer> server = MCMG_NetworkHandler.getProxy().getServer(serverName);
+        Collection<Player> players = server.map(RegisteredServer::getPlayersConnected).orElse(List.of());
+
+        // Reserve a seat for every player before moving anyone, so that a drain never strands only some players
+        List<String> targetServerNames = ActiveServerUtil.reserveTransferableServerNames(serverType, Collections.nCopies(players.size(), 1));
+        if (targetServerNames.isEmpty() && !players.isEmpty())
+        {
+            MCMG_NetworkHandler.getLogger().info("{} is under-used, but other {} servers have no room for its players.", serverName, serverType);
+            ServerLifecycleUtil.cancelDraining(serverName);
+            return;
+        }
+
+        MCMG_NetworkHandler.getLogger().info("{} is under-used; moving its {} player(s) and stopping it.", serverName, players.size());
+
+        // Move every player to their reserved server
+        List<CompletableFuture<?>> moves = new ArrayList<>(players.size());
+        int i = 0;
+        for (Player player : players)
+        {
+            Optional<RegisteredServer> targetServer = MCMG_NetworkHandler.getProxy().getServer(targetServerNames.get(i++));
+            targetServer.ifPresent(target -> moves.add(player.createConnectionRequest(target).connect()));
+        }
+
+        // Stop and delete the instance once every move has completed (or the drain times out)
+        CompletableFuture.allOf(moves.toArray(new CompletableFuture[0]))
+                .orTimeout(ConfigUtil.getDrainTimeout(), TimeUnit.SECONDS)
+                .whenComplete((result, ex) -> ServerProcessUtil.stopAndDeleteServer(serverName));
+    }
 }
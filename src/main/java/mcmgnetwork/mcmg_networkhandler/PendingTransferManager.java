@@ -0,0 +1,142 @@
+package mcmgnetwork.mcmg_networkhandler;
+
+import mcmgnetwork.mcmg_networkhandler.protocols.ServerStatuses;
+import mcmgnetwork.mcmg_networkhandler.utilities.ConfigUtil;
+import mcmgnetwork.mcmg_networkhandler.utilities.ServerInitializeUtil;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Description: <p>
+ *  Holds lobby transfer requests that could not be fulfilled because a new server instance of the requested type is
+ *  still initializing. Pending requests are parked in a wait queue per server type, and are sent to the new instance
+ *  as soon as it becomes transferable; a batch of parties stays queued until all of its parties can be placed. Requests
+ *  that wait longer than the configured timeout receive a failed initialization response instead.
+ *
+ *  <p>Author(s): Miles Bovero
+ *  <p>Date Created: 10/17/26
+ */
+public class PendingTransferManager
+{
+
+    /**
+     * A map of server types and the queue of transfer requests waiting on a server of that type, in arrival order
+     */
+    private static final Map<String, Deque<TransferBatch>> pendingTransfers = new ConcurrentHashMap<>();
+
+    /**
+     * Handles the expiration of pending transfer requests
+     */
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable ->
+    {
+        Thread thread = new Thread(runnable, "MCMG-pending-transfers");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Parks a lobby transfer request until servers of the requested type have room for it, or until the request times
+     * out.
+     * @param batch The transfer request waiting on a server of its requested type
+     */
+    static void queueTransfer(TransferBatch batch)
+    {
+        Deque<TransferBatch> serverTypeTransfers = pendingTransfers.computeIfAbsent(batch.getServerType(), type -> new ConcurrentLinkedDeque<>());
+        serverTypeTransfers.addLast(batch);
+
+        // If the request is still waiting once the timeout elapses, give up on it
+        executor.schedule(() ->
+        {
+            if (serverTypeTransfers.remove(batch))
+            {
+                MCMG_NetworkHandler.getLogger().warn("{} timed out while waiting for a new server to initialize.", batch);
+                batch.sendResponse(ServerStatuses.FAILED_INITIALIZATION);
+            }
+        }, ConfigUtil.getPendingTransferTimeout(), TimeUnit.SECONDS);
+    }
+
+    /**
+     * Sends each pending transfer request to transferable servers of its requested type, if they have room for it.
+     * Requests are placed strictly in arrival order: once a request does not fit, it and every later request remain
+     * queued, and another server is started for them if none is starting already.
+     */
+    public static void processPendingTransfers()
+    {
+        for (Map.Entry<String, Deque<TransferBatch>> entry : pendingTransfers.entrySet())
+        {
+            String serverType = entry.getKey();
+            Deque<TransferBatch> serverTypeTransfers = entry.getValue();
+
+            // Requests with a party larger than a whole instance can never be placed, so they are answered now
+            for (TransferBatch batch : serverTypeTransfers)
+            {
+                if (!batch.fitsInstanceCapacity() && serverTypeTransfers.remove(batch))
+                {
+                    MCMG_NetworkHandler.getLogger().warn("{} has a party larger than a single {} server.", batch, serverType);
+                    batch.sendResponse(ServerStatuses.FULL);
+                }
+            }
+
+            // Place waiting requests (reserving seats for them) until one does not fit
+            List<TransferBatch> placedTransfers = new ArrayList<>();
+            for (TransferBatch batch : serverTypeTransfers)
+            {
+                if (!batch.placeParties())
+                    break;
+
+                // The request may have timed out in the meantime, in which case its seats are not needed
+                if (serverTypeTransfers.remove(batch))
+                    placedTransfers.add(batch);
+                else
+                    batch.releaseSeats();
+            }
+
+            // Send the placed requests' responses
+            for (TransferBatch batch : placedTransfers)
+                batch.sendResponse(ServerStatuses.TRANSFERABLE);
+
+            if (!placedTransfers.isEmpty())
+            {
+                MCMG_NetworkHandler.getLogger().info("Sent {} pending transfer(s) to {} servers.", placedTransfers.size(), serverType);
+                MinigameLobbyManager.requestWarmStandbyCheck(serverType);
+            }
+
+            // Requests that still do not fit need another server
+            if (!serverTypeTransfers.isEmpty())
+                startServerForPendingTransfers(serverType, serverTypeTransfers);
+        }
+    }
+
+    /**
+     * Stops the expiration thread, discarding any pending expirations.
+     */
+    public static void shutdown()
+    { executor.shutdownNow(); }
+
+    /**
+     * Starts another server of the specified type for requests that still do not fit on the active servers (unless one
+     * is starting already). If no server can be started, the requests are answered with the resulting status instead.
+     * @param serverType The server type the requests are waiting on
+     * @param serverTypeTransfers The requests waiting on the server type
+     */
+    private static void startServerForPendingTransfers(String serverType, Deque<TransferBatch> serverTypeTransfers)
+    {
+        ServerInitializeUtil.startNewServer(serverType).thenAccept(serverStatus ->
+        {
+            if (serverStatus == ServerStatuses.INITIALIZING || serverStatus == ServerStatuses.BEGAN_INITIALIZATION)
+                return;
+
+            TransferBatch batch;
+            while ((batch = serverTypeTransfers.pollFirst()) != null)
+                batch.sendResponse(serverStatus);
+        });
+    }
+}
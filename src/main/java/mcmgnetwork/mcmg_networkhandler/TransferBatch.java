@@ -0,0 +1,184 @@
+package mcmgnetwork.mcmg_networkhandler;
+
+import com.velocitypowered.api.proxy.ServerConnection;
+import lombok.Getter;
+import mcmgnetwork.mcmg_networkhandler.listeners.PluginMessageHandler;
+import mcmgnetwork.mcmg_networkhandler.protocols.MessageTypes;
+import mcmgnetwork.mcmg_networkhandler.protocols.PluginMessageWriter;
+import mcmgnetwork.mcmg_networkhandler.protocols.ServerStatuses;
+import mcmgnetwork.mcmg_networkhandler.utilities.ActiveServerUtil;
+import mcmgnetwork.mcmg_networkhandler.utilities.SeatReservationUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Description: <p>
+ *  A lobby transfer request for one or more parties of players to the same server type, placed as a single decision:
+ *  either every party is given a server (with each party's members on the same server), or none are. A single
+ *  player's LOBBY_TRANSFER_REQUEST is a batch of one party of one, answered with a LOBBY_TRANSFER_RESPONSE; a
+ *  LOBBY_TRANSFER_BATCH_REQUEST is answered with one LOBBY_TRANSFER_BATCH_RESPONSE. Either response carries the
+ *  request's correlation id.
+ *
+ *  <p>Author(s): Miles Bovero
+ *  <p>Date Created: 10/17/26
+ */
+class TransferBatch
+{
+    /**
+     * The connection of the server that sent the request
+     */
+    private final ServerConnection source;
+
+    /**
+     * The correlation id chosen by the requesting server, returned in the response
+     */
+    private final int correlationId;
+
+    /**
+     * The server type that the parties requested to be transferred to
+     */
+    @Getter
+    private final String serverType;
+
+    /**
+     * The player names of each party's members
+     */
+    private final List<List<String>> parties;
+
+    /**
+     * Whether or not the request was a LOBBY_TRANSFER_BATCH_REQUEST (rather than a single player's request)
+     */
+    private final boolean batched;
+
+    /**
+     * The names of the servers each party was placed on, in party order; empty until the batch has been placed
+     */
+    private volatile List<String> serverNames = List.of();
+
+    private TransferBatch(ServerConnection source, int correlationId, String serverType, List<List<String>> parties, boolean batched)
+    {
+        this.source = source;
+        this.correlationId = correlationId;
+        this.serverType = serverType;
+        this.parties = parties;
+        this.batched = batched;
+    }
+
+    /**
+     * @param source The connection of the server that sent the request
+     * @param correlationId The request's correlation id
+     * @param serverType The server type that the player requested to be transferred to
+     * @param playerName The name of the player requested to be transferred
+     * @return A batch holding a single player's transfer request
+     */
+    static TransferBatch forPlayer(ServerConnection source, int correlationId, String serverType, String playerName)
+    { return new TransferBatch(source, correlationId, serverType, List.of(List.of(playerName)), false); }
+
+    /**
+     * @param source The connection of the server that sent the request
+     * @param correlationId The request's correlation id
+     * @param serverType The server type that the parties requested to be transferred to
+     * @param parties The player names of each party's members
+     * @return A batch holding a LOBBY_TRANSFER_BATCH_REQUEST's parties
+     */
+    static TransferBatch forParties(ServerConnection source, int correlationId, String serverType, List<List<String>> parties)
+    { return new TransferBatch(source, correlationId, serverType, parties, true); }
+
+    /**
+     * @return The total number of players in the batch
+     */
+    int getPlayerCount()
+    {
+        int playerCount = 0;
+        for (List<String> party : parties)
+            playerCount += party.size();
+
+        return playerCount;
+    }
+
+    /**
+     * @return Whether or not the batch holds no parties at all (and so needs no server)
+     */
+    boolean isEmpty()
+    { return parties.isEmpty(); }
+
+    /**
+     * @return Whether or not every party could fit on a single instance of the requested type; true if the type's
+     * instance capacity is not known yet (i.e. none of its servers are active)
+     */
+    boolean fitsInstanceCapacity()
+    {
+        int instanceCapacity = ActiveServerUtil.getInstanceCapacity(serverType);
+        if (instanceCapacity < 0)
+            return true;
+
+        for (List<String> party : parties)
+            if (party.size() > instanceCapacity)
+                return false;
+
+        return true;
+    }
+
+    /**
+     * Attempts to place every party on a transferable server of the requested type (reserving seats for them).
+     * @return Whether or not every party was placed; if not, no seats were reserved
+     */
+    boolean placeParties()
+    {
+        List<Integer> seatCounts = new ArrayList<>(parties.size());
+        for (List<String> party : parties)
+            seatCounts.add(party.size());
+
+        serverNames = ActiveServerUtil.reserveTransferableServerNames(serverType, seatCounts);
+        return !serverNames.isEmpty();
+    }
+
+    /**
+     * Releases the seats reserved by placeParties, if the batch was placed; used when the batch will not be sent to
+     * its servers after all.
+     */
+    void releaseSeats()
+    {
+        List<String> placedServerNames = serverNames;
+        serverNames = List.of();
+        for (int i=0; i<placedServerNames.size(); i++)
+            SeatReservationUtil.releaseSeats(placedServerNames.get(i), parties.get(i).size());
+    }
+
+    /**
+     * Sends the response to this batch's request to the requesting server.
+     * @param serverStatus The status of the requested server type; server names are only sent if it is TRANSFERABLE
+     */
+    void sendResponse(ServerStatuses serverStatus)
+    {
+        List<String> placedServerNames = serverStatus == ServerStatuses.TRANSFERABLE ? serverNames : List.of();
+
+        // Format return message
+        PluginMessageWriter out;
+        if (batched)
+        {
+            out = new PluginMessageWriter(MessageTypes.LOBBY_TRANSFER_BATCH_RESPONSE)
+                    .writeVarInt(correlationId)
+                    .writeStatus(serverStatus)
+                    .writeVarInt(parties.size());
+            for (int i=0; i<parties.size(); i++)
+                out.writeString(placedServerNames.isEmpty() ? "" : placedServerNames.get(i));
+        }
+        else
+        {
+            out = new PluginMessageWriter(MessageTypes.LOBBY_TRANSFER_RESPONSE)
+                    .writeVarInt(correlationId)
+                    .writeStatus(serverStatus)
+                    .writeString(parties.get(0).get(0))
+                    .writeString(placedServerNames.isEmpty() ? "" : placedServerNames.get(0));
+        }
+
+        // Send response message
+        PluginMessageHandler.sendPluginMessage(source, out.toByteArray());
+    }
+
+    @Override
+    public String toString()
+    { return "transfer request " + correlationId + " (" + getPlayerCount() + " player(s) to " + serverType + ")"; }
+}
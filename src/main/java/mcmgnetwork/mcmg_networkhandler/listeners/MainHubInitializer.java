@@ -2,15 +2,27 @@ package mcmgnetwork.mcmg_networkhandler.listeners;
 
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.connection.*;
+import mcmgnetwork.mcmg_networkhandler.MCMG_NetworkHandler;
 import mcmgnetwork.mcmg_networkhandler.protocols.ServerTypes;
 import mcmgnetwork.mcmg_networkhandler.utilities.ActiveServerUtil;
+import mcmgnetwork.mcmg_networkhandler.utilities.ConfigUtil;
 import mcmgnetwork.mcmg_networkhandler.utilities.ServerInitializeUtil;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Description: <p>
  *  Handles the initialization of new main_hub servers when all main_hub server instances are currently inactive or full.
+ *  <p>
+ *  Disconnect signals are debounced and rate limited: a signal schedules an evaluation for as soon as the configured
+ *  window has passed since the previous evaluation (immediately, if it already has), and every further signal before
+ *  that evaluation runs is folded into it (and counted as a skipped trigger), so that a hub outage or login storm
+ *  costs at most one evaluation per window.
  *
  *  <p>Author(s): Miles Bovero
  *  <p>Date Created: 5/12/24
@@ -19,27 +31,100 @@ public class MainHubInitializer
 {
 
     /**
-     * Listens for DisconnectEvents, and when an event with a PRE_SERVER_JOIN LoginStatus is detected, checks if a new
-     * main_hub server instance should be made.
+     * Whether or not an evaluation is scheduled and has not yet begun
+     */
+    private static final AtomicBoolean evaluationScheduled = new AtomicBoolean(false);
+
+    /**
+     * The system time (in milliseconds) at which the most recent evaluation began
+     */
+    private static volatile long lastEvaluationTime = 0;
+
+    /**
+     * The total number of disconnect signals folded into an already scheduled evaluation
+     */
+    private static final AtomicLong skippedTriggerCount = new AtomicLong();
+
+    /**
+     * The number of disconnect signals folded into the currently scheduled evaluation
+     */
+    private static final AtomicLong pendingSkippedTriggerCount = new AtomicLong();
+
+    /**
+     * Runs debounced evaluations
+     */
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable ->
+    {
+        Thread thread = new Thread(runnable, "MCMG-main-hub");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Listens for DisconnectEvents, and when an event with a PRE_SERVER_JOIN LoginStatus is detected, requests a
+     * (debounced) check of whether a new main_hub server instance should be made.
      * @param e The DisconnectEvent to be handled
      */
     @Subscribe
     public void onDisconnectEvent(DisconnectEvent e)
     {
         if (e.getLoginStatus().equals(DisconnectEvent.LoginStatus.PRE_SERVER_JOIN))
+            requestEvaluation();
+    }
+
+    /**
+     * @return The total number of disconnect signals that were folded into an already scheduled evaluation rather than
+     * triggering their own
+     */
+    public static long getSkippedTriggerCount()
+    { return skippedTriggerCount.get(); }
+
+    /**
+     * Schedules an evaluation for as soon as the debounce window since the previous evaluation has passed, unless one
+     * is already scheduled (in which case the signal is counted as a skipped trigger).
+     */
+    private static void requestEvaluation()
+    {
+        if (!evaluationScheduled.compareAndSet(false, true))
+        {
+            skippedTriggerCount.incrementAndGet();
+            pendingSkippedTriggerCount.incrementAndGet();
+            return;
+        }
+
+        long window = ConfigUtil.getMainHubDebounceWindow();
+        long delay = Math.max(0, lastEvaluationTime + window - System.currentTimeMillis());
+        executor.schedule(() ->
+        {
+            // Signals arriving from now on schedule the next evaluation
+            lastEvaluationTime = System.currentTimeMillis();
+            evaluationScheduled.set(false);
+
+            long skippedTriggers = pendingSkippedTriggerCount.getAndSet(0);
+            if (skippedTriggers > 0)
+                MCMG_NetworkHandler.getLogger().info("Folded {} main_hub provisioning trigger(s) into one evaluation ({} skipped in total).",
+                        skippedTriggers, skippedTriggerCount.get());
+
             initializeNewMainHubServer();
+        }, delay, TimeUnit.MILLISECONDS);
     }
 
     /**
-     * Pings network servers to see if there are no active main_hub servers or if all main_hub servers are full. If so,
-     * an attempt to start a new main_hub server instance is made.
+     * Stops the debounce thread, discarding any evaluation still waiting on it.
+     */
+    public static void shutdown()
+    { executor.shutdownNow(); }
+
+    /**
+     * Checks recent network server information to see if there are no active main_hub servers or if all main_hub
+     * servers are full. If so, an attempt to start a new main_hub server instance is made.
      */
-    private void initializeNewMainHubServer()
+    private static void initializeNewMainHubServer()
     {
-        // Get updated information on all network servers
-        CompletableFuture<Void> serverInfoFuture = ActiveServerUtil.getServerInfoFuture();
+        // Get recent information on all network servers (only pinging the network if the cached information is stale)
+        CompletableFuture<Void> serverInfoFuture = ActiveServerUtil.getCachedServerInfoFuture();
 
-        // Wait for all server pings to complete, then run remaining code:
+        // Wait for server information to be available, then run remaining code:
         serverInfoFuture.thenRun(() ->
         {
             // Check for any operational main hub servers
@@ -1,20 +1,25 @@
 package mcmgnetwork.mcmg_networkhandler.listeners;
 
-import com.google.common.io.ByteArrayDataInput;
-import com.google.common.io.ByteStreams;
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.connection.PluginMessageEvent;
 import com.velocitypowered.api.proxy.ServerConnection;
 import com.velocitypowered.api.proxy.messages.MinecraftChannelIdentifier;
 import lombok.Getter;
+import mcmgnetwork.mcmg_networkhandler.HeartbeatHandler;
 import mcmgnetwork.mcmg_networkhandler.MCMG_NetworkHandler;
 import mcmgnetwork.mcmg_networkhandler.LobbyTransferHandler;
 import mcmgnetwork.mcmg_networkhandler.protocols.ChannelNames;
 import mcmgnetwork.mcmg_networkhandler.protocols.MessageTypes;
+import mcmgnetwork.mcmg_networkhandler.protocols.PluginMessageReader;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Description: <p>
- *  Handles all incoming and outgoing plugin messages heard by this plugin.
+ *  Handles all incoming and outgoing plugin messages heard by this plugin. Incoming messages are routed to their
+ *  handlers through a dispatch table indexed by opcode (see MessageTypes). Outgoing messages are sent only to the
+ *  server that they concern (e.g. the server that sent a request).
  *
  *  <p>Author(s): Miles Bovero
  *  <p>Date Created: 5/9/24
@@ -24,6 +29,33 @@ public class PluginMessageHandler
     @Getter
     private static final MinecraftChannelIdentifier MCMG_IDENTIFIER = MinecraftChannelIdentifier.from(ChannelNames.MCMG);
 
+    /**
+     * Handles the fields of an incoming plugin message of a single message type
+     */
+    @FunctionalInterface
+    private interface MessageHandler
+    {
+        void handle(ServerConnection source, PluginMessageReader in);
+    }
+
+    /**
+     * The handlers of each incoming message type, indexed by opcode; null for message types that are never received
+     */
+    private static final MessageHandler[] handlers = new MessageHandler[MessageTypes.OPCODE_COUNT];
+
+    /**
+     * The names of servers whose latest plugin message was sent with a different protocol version; each such server is
+     * only warned about once, rather than for every heartbeat it sends
+     */
+    private static final Set<String> outdatedServerNames = ConcurrentHashMap.newKeySet();
+
+    static
+    {
+        handlers[MessageTypes.LOBBY_TRANSFER_REQUEST] = LobbyTransferHandler::handleLobbyTransferRequest;
+        handlers[MessageTypes.LOBBY_TRANSFER_BATCH_REQUEST] = LobbyTransferHandler::handleLobbyTransferBatchRequest;
+        handlers[MessageTypes.SERVER_HEARTBEAT] = HeartbeatHandler::handleServerHeartbeat;
+    }
+
     /**
      * Listens for incoming plugin messages, identifies recognized messages, and handles them.
      * @param e The event indicating an incoming plugin message has arrived; contains plugin message data
@@ -31,19 +63,48 @@ public class PluginMessageHandler
     @Subscribe
     public void onPluginMessageFromPlugin(PluginMessageEvent e)
     {
-        MCMG_NetworkHandler.getLogger().info("The MCMG_NetworkHandler received a plugin message.");  //TODO remove
-
-        // Only accept messages from servers (not players)
-        if (!(e.getSource() instanceof ServerConnection)) return;
         // Only handle plugin messages on the MCMG channel
         if (e.getIdentifier() != MCMG_IDENTIFIER) return;
+        // MCMG channel messages are meant for the proxy alone; they must never be forwarded to a player or server
+        e.setResult(PluginMessageEvent.ForwardResult.handled());
+        // Only accept messages from servers (not players)
+        if (!(e.getSource() instanceof ServerConnection source)) return;
 
         // Read incoming message data/contents
-        ByteArrayDataInput in = ByteStreams.newDataInput(e.getData());
-        String subChannel = in.readUTF();
+        PluginMessageReader in = new PluginMessageReader(e.getData());
+        try
+        {
+            String serverName = source.getServerInfo().getName();
+            int opcode = in.readHeader();
+            if (opcode < 0)
+            {
+                if (outdatedServerNames.add(serverName))
+                    MCMG_NetworkHandler.getLogger().warn("Ignoring plugin messages from {}, which sends a different protocol version.", serverName);
+                return;
+            }
+            outdatedServerNames.remove(serverName);
+
+            // Only handle specific message types
+            MessageHandler handler = opcode < handlers.length ? handlers[opcode] : null;
+            if (handler != null)
+                handler.handle(source, in);
+        }
+        catch (IllegalArgumentException ex)
+        { MCMG_NetworkHandler.getLogger().warn("Ignored a malformed plugin message: {}", ex.getMessage()); }
+    }
+
+    /**
+     * Sends a plugin message on the MCMG channel to the server that a request came from. If the connection the request
+     * arrived on has since closed, the message is sent through any other connection to the same server instead.
+     * @param source The connection that the request arrived on
+     * @param message The encoded plugin message (see PluginMessageWriter)
+     */
+    public static void sendPluginMessage(ServerConnection source, byte[] message)
+    {
+        if (source.sendPluginMessage(MCMG_IDENTIFIER, message) || source.getServer().sendPluginMessage(MCMG_IDENTIFIER, message))
+            return;
 
-        // Only handle specific sub-channels / message types
-        if (subChannel.equals(MessageTypes.LOBBY_TRANSFER_REQUEST))
-            LobbyTransferHandler.handleLobbyTransferRequest(in);
+        MCMG_NetworkHandler.getLogger().warn("A plugin message could not be sent to {} because no players are connected to it.",
+                source.getServerInfo().getName());
     }
 }
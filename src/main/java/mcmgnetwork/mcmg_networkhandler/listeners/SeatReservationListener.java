@@ -0,0 +1,25 @@
+package mcmgnetwork.mcmg_networkhandler.listeners;
+
+import com.velocitypowered.api.event.Subscribe;
+import com.velocitypowered.api.event.player.ServerConnectedEvent;
+import mcmgnetwork.mcmg_networkhandler.utilities.SeatReservationUtil;
+
+/**
+ * Description: <p>
+ *  Releases seat reservations as the players they were made for arrive on their target servers.
+ *
+ *  <p>Author(s): Miles Bovero
+ *  <p>Date Created: 10/17/26
+ */
+public class SeatReservationListener
+{
+
+    /**
+     * Listens for ServerConnectedEvents, and releases the oldest seat reservation on the server that the player
+     * connected to; the player now takes up that seat themselves.
+     * @param e The ServerConnectedEvent that was fired
+     */
+    @Subscribe
+    public void onServerConnected(ServerConnectedEvent e)
+    { SeatReservationUtil.confirmSeats(e.getServer().getServerInfo().getName(), 1); }
+}
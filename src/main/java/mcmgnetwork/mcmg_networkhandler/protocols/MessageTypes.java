@@ -3,38 +3,82 @@ package mcmgnetwork.mcmg_networkhandler.protocols;
 /**
  * Description: <p>
  *  Stores plugin messaging channel message types for easy reference.
+ *  <p>
+ *  Every message on the MCMG channel begins with the PROTOCOL_VERSION byte followed by the message type's
+ *  varint-encoded opcode (see PluginMessageWriter and PluginMessageReader). Opcodes must never be reused or reordered
+ *  without bumping PROTOCOL_VERSION.
  *
  *  <p>Author(s): Miles Bovero
  *  <p>Date Created: 5/7/24
  */
 public class MessageTypes
 {
+    /**
+     * The version of the MCMG channel's binary message format; messages of any other version are ignored
+     */
+    public static final int PROTOCOL_VERSION = 2;
+
     /**
      * A Paper message type; connects the specified player to the specified server.
      */
     public static final String TRANSFER = "ConnectOther";
 
     /**
-     * DataOutput should contain LOBBY_TRANSFER_REQUEST, [player to be transferred], [lobby server type to transfer to]
+     * Message should contain LOBBY_TRANSFER_REQUEST, [correlation id], [player to be transferred], [lobby server type to
+     * transfer to]
      * <p>
-     * Causes the proxy server to return a SERVER_TRANSFER_RESPONSE plugin message type.
+     * Causes the proxy server to return a LOBBY_TRANSFER_RESPONSE plugin message type with the same correlation id.
      */
-    public static final String LOBBY_TRANSFER_REQUEST = "LobbyTransferRequest";
+    public static final int LOBBY_TRANSFER_REQUEST = 0;
 
     /**
      * The message sent by the proxy server in response to a LOBBY_TRANSFER_REQUEST, providing further information and
      * instructions to the requesting server plugin.
      * <p>
-     * Contains the status of the LOBBY_TRANSFER_REQUEST's specified server type ("transferable", "initializing", etc.),
-     * the name of the player to be transferred, and - if any server of that type is online/transferable - the name of
-     * an online server to transfer the player to.
+     * Contains the LOBBY_TRANSFER_REQUEST's correlation id, the status of its specified server type (a ServerStatuses
+     * id), the name of the player to be transferred, and - if any server of that type is online/transferable - the name
+     * of an online server to transfer the player to.
      */
-    public static final String LOBBY_TRANSFER_RESPONSE = "LobbyTransferResponse";
+    public static final int LOBBY_TRANSFER_RESPONSE = 1;
 
     /**
      * A message sent by game server instances to the proxy server upon completion of a game. This message instructs
      * the MinigameLobbyManager to initialize or shutdown the requested lobby servers as necessary to prepare to return
      * the game server's players to a lobby server.
      */
-    public static final String LOBBY_PREPARATION_REQUEST = "LobbyPreparationRequest";
+    public static final int LOBBY_PREPARATION_REQUEST = 2;
+
+    /**
+     * Message should contain LOBBY_TRANSFER_BATCH_REQUEST, [correlation id], [lobby server type to transfer to],
+     * [party count], and for each party: [member count], [each member's player name]. Players without a party are sent
+     * as parties of one.
+     * <p>
+     * All parties are placed as a single decision, and each party's members are always placed on the same server.
+     * Causes the proxy server to return a single LOBBY_TRANSFER_BATCH_RESPONSE plugin message type with the same
+     * correlation id.
+     */
+    public static final int LOBBY_TRANSFER_BATCH_REQUEST = 3;
+
+    /**
+     * The message sent by the proxy server in response to a LOBBY_TRANSFER_BATCH_REQUEST.
+     * <p>
+     * Contains the request's correlation id, the status of its specified server type (a ServerStatuses id), the party
+     * count, and for each party (in request order) the name of the server to transfer its members to; server names are
+     * empty unless the status is TRANSFERABLE.
+     */
+    public static final int LOBBY_TRANSFER_BATCH_RESPONSE = 4;
+
+    /**
+     * Message should contain SERVER_HEARTBEAT, [online player count], [maximum player count], [ticks per second in
+     * hundredths], [lifecycle state (an InstanceState id)]
+     * <p>
+     * Sent by backend servers on a fixed interval and whenever a player joins or leaves, keeping the proxy's server
+     * information current without pinging the server.
+     */
+    public static final int SERVER_HEARTBEAT = 5;
+
+    /**
+     * The number of opcodes in use; opcodes range from 0 (inclusive) to this value (exclusive)
+     */
+    public static final int OPCODE_COUNT = 6;
 }
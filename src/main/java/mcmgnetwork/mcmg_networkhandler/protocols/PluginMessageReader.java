@@ -0,0 +1,108 @@
+package mcmgnetwork.mcmg_networkhandler.protocols;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Description: <p>
+ *  Decodes the fields of an MCMG channel plugin message directly from the message's byte array (see
+ *  PluginMessageWriter for the encoding of each field).
+ *
+ *  <p>Author(s): Miles Bovero
+ *  <p>Date Created: 10/17/26
+ */
+public class PluginMessageReader
+{
+    /**
+     * The maximum number of bytes a varint may be encoded in
+     */
+    private static final int MAX_VARINT_BYTES = 5;
+
+    private final byte[] data;
+    private int position;
+
+    /**
+     * Creates a reader positioned at the start of the provided message.
+     * @param data The plugin message's data
+     */
+    public PluginMessageReader(byte[] data)
+    { this.data = data; }
+
+    /**
+     * Reads the message's header, checking its protocol version.
+     * @return The message's opcode; -1 if the message was written with a different protocol version
+     * @throws IllegalArgumentException Indicates the message is malformed
+     */
+    public int readHeader()
+    {
+        if (readByte() != MessageTypes.PROTOCOL_VERSION)
+            return -1;
+
+        return readVarInt();
+    }
+
+    /**
+     * @return The next varint-encoded int of the message
+     * @throws IllegalArgumentException Indicates the message is malformed
+     */
+    public int readVarInt()
+    {
+        int value = 0;
+        for (int i=0; i<MAX_VARINT_BYTES; i++)
+        {
+            byte b = readByte();
+            value |= (b & 0x7F) << (i * 7);
+            if ((b & 0x80) == 0)
+                return value;
+        }
+
+        throw new IllegalArgumentException("Varint is longer than " + MAX_VARINT_BYTES + " bytes");
+    }
+
+    /**
+     * @return The next varint-encoded element count of the message (e.g. the length of a list that follows)
+     * @throws IllegalArgumentException Indicates the message is malformed, or the count exceeds the number of bytes left
+     * (every counted element takes at least one byte)
+     */
+    public int readCount()
+    {
+        int count = readVarInt();
+        if (count < 0 || count > data.length - position)
+            throw new IllegalArgumentException("Count " + count + " exceeds the remaining message");
+
+        return count;
+    }
+
+    /**
+     * @return The next string (a varint byte length followed by UTF-8 bytes) of the message
+     * @throws IllegalArgumentException Indicates the message is malformed
+     */
+    public String readString()
+    {
+        int length = readVarInt();
+        if (length < 0 || length > data.length - position)
+            throw new IllegalArgumentException("String length " + length + " exceeds the remaining message");
+
+        String value = new String(data, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    /**
+     * @return The next server status of the message
+     * @throws IllegalArgumentException Indicates the message is malformed
+     */
+    public ServerStatuses readStatus()
+    { return ServerStatuses.fromId(readVarInt()); }
+
+    /**
+     * @return The next byte of the message
+     * @throws IllegalArgumentException Indicates the message has no bytes left
+     */
+    private byte readByte()
+    {
+        if (position >= data.length)
+            throw new IllegalArgumentException("Unexpected end of message");
+
+        return data[position++];
+    }
+}
@@ -0,0 +1,94 @@
+package mcmgnetwork.mcmg_networkhandler.protocols;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Description: <p>
+ *  Encodes an MCMG channel plugin message: the PROTOCOL_VERSION byte and a varint opcode, followed by the message's
+ *  fields. Ints and server statuses are encoded as varints (7 bits per byte, least significant group first), and
+ *  strings as a varint byte length followed by UTF-8 bytes.
+ *
+ *  <p>Author(s): Miles Bovero
+ *  <p>Date Created: 10/17/26
+ */
+public class PluginMessageWriter
+{
+    private byte[] data = new byte[64];
+    private int length;
+
+    /**
+     * Creates a writer for a new message, writing its header.
+     * @param opcode The opcode of the message's type (see MessageTypes)
+     */
+    public PluginMessageWriter(int opcode)
+    {
+        writeByte(MessageTypes.PROTOCOL_VERSION);
+        writeVarInt(opcode);
+    }
+
+    /**
+     * Writes a varint-encoded int.
+     * @param value The int to write
+     * @return This writer
+     */
+    public PluginMessageWriter writeVarInt(int value)
+    {
+        while ((value & ~0x7F) != 0)
+        {
+            writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        writeByte(value);
+        return this;
+    }
+
+    /**
+     * Writes a string as its varint byte length followed by its UTF-8 bytes.
+     * @param value The string to write
+     * @return This writer
+     */
+    public PluginMessageWriter writeString(String value)
+    {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, data, length, bytes.length);
+        length += bytes.length;
+        return this;
+    }
+
+    /**
+     * Writes a server status as its varint-encoded id.
+     * @param status The status to write
+     * @return This writer
+     */
+    public PluginMessageWriter writeStatus(ServerStatuses status)
+    { return writeVarInt(status.getId()); }
+
+    /**
+     * @return The encoded message
+     */
+    public byte[] toByteArray()
+    { return Arrays.copyOf(data, length); }
+
+    /**
+     * Writes the low 8 bits of the provided int as a single byte.
+     * @param value The byte to write
+     */
+    private void writeByte(int value)
+    {
+        ensureCapacity(1);
+        data[length++] = (byte) value;
+    }
+
+    /**
+     * Grows the message's buffer, if necessary, to fit the provided number of additional bytes.
+     * @param additionalBytes The number of bytes about to be written
+     */
+    private void ensureCapacity(int additionalBytes)
+    {
+        if (length + additionalBytes > data.length)
+            data = Arrays.copyOf(data, Math.max(data.length * 2, length + additionalBytes));
+    }
+}
@@ -1,37 +1,73 @@
 package mcmgnetwork.mcmg_networkhandler.protocols;
 
+import lombok.Getter;
+
 /**
  * Description: <p>
  *  Stores MCMG network server statuses recognized by the Velocity proxy server's MCMG_NetworkHandler plugin used for
- *  handling plugin messages.
+ *  handling plugin messages. Each status is sent over the network as its varint-encoded id; ids must never be reused
+ *  or reordered without bumping MessageTypes.PROTOCOL_VERSION.
  *
  *  <p>Author(s): Miles Bovero
  *  <p>Date Created: 5/10/24
  */
-public class ServerStatuses
+public enum ServerStatuses
 {
     /**
      * Indicates that all servers of a requested type are full
      */
-    public static final String FULL = "full";
+    FULL(0),
 
     /**
      * Indicates that an attempted server creation/initialization failed
      */
-    public static final String FAILED_INITIALIZATION = "failed_initialization";
+    FAILED_INITIALIZATION(1),
 
     /**
      * Indicates that a new server was successfully created and began initialization
      */
-    public static final String BEGAN_INITIALIZATION = "began_initialization";
+    BEGAN_INITIALIZATION(2),
 
     /**
      * Indicates that a server is actively being initialized
      */
-    public static final String INITIALIZING = "initializing";
+    INITIALIZING(3),
 
     /**
      * Indicates that a server is able to be transferred to
      */
-    public static final String TRANSFERABLE = "transferable";
+    TRANSFERABLE(4);
+
+    /**
+     * The statuses indexed by their ids
+     */
+    private static final ServerStatuses[] statusesById = new ServerStatuses[values().length];
+
+    static
+    {
+        for (ServerStatuses status : values())
+            statusesById[status.id] = status;
+    }
+
+    /**
+     * The id this status is sent over the network as
+     */
+    @Getter
+    private final int id;
+
+    ServerStatuses(int id)
+    { this.id = id; }
+
+    /**
+     * @param id The id of a status, as read from a plugin message
+     * @return The status with the provided id
+     * @throws IllegalArgumentException Indicates the id does not belong to any status
+     */
+    public static ServerStatuses fromId(int id)
+    {
+        if (id < 0 || id >= statusesById.length)
+            throw new IllegalArgumentException("Unknown server status id: " + id);
+
+        return statusesById[id];
+    }
 }
@@ -8,6 +8,10 @@ import mcmgnetwork.mcmg_networkhandler.MCMG_NetworkHandler;
 import java.security.InvalidParameterException;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Description: <p>
@@ -21,121 +25,473 @@ public class ActiveServerUtil
 {
 
     /**
-     * A map of the names of active servers and the ServerInfoPackage corresponding to that server
+     * The current snapshot of active server information; replaced atomically whenever a server's information changes
+     */
+    private static final AtomicReference<ServerInfoSnapshot> activeServerInfo = new AtomicReference<>(ServerInfoSnapshot.EMPTY);
+
+    /**
+     * The system time (in milliseconds) at which the most recently completed refresh of activeServerInfo began
      */
     @Getter
-    private static final HashMap<String, ServerInfoPackage> activeServerInfo = new HashMap<>();
+    private static volatile long lastRefreshTime = 0;
+
+    /**
+     * The CompletableFuture of the refresh of activeServerInfo currently in progress; null if no refresh is in progress
+     */
+    private static final AtomicReference<CompletableFuture<Void>> inFlightRefresh = new AtomicReference<>();
+
+    /**
+     * A map of the names of servers currently being pinged and the CompletableFuture of that server's ping
+     */
+    private static final ConcurrentHashMap<String, CompletableFuture<ServerPing>> inFlightPings = new ConcurrentHashMap<>();
+
+    /**
+     * A map of server names and the system time (in milliseconds) at which that server's latest heartbeat was received
+     */
+    private static final ConcurrentHashMap<String, Long> lastHeartbeatTimes = new ConcurrentHashMap<>();
+
+    /**
+     * Tasks run each time a refresh of activeServerInfo completes
+     */
+    private static final List<Runnable> refreshListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * A map of server types and the object locked while reserving a seat on a server of that type
+     */
+    private static final ConcurrentHashMap<String, Object> reservationLocks = new ConcurrentHashMap<>();
+
+    /**
+     * @return The current immutable snapshot of active server information; safe to read from any thread
+     */
+    public static ServerInfoSnapshot getSnapshot()
+    { return activeServerInfo.get(); }
+
+    /**
+     * @return An unmodifiable map of the names of active servers and the ServerInfoPackage corresponding to that server
+     */
+    public static Map<String, ServerInfoPackage> getActiveServerInfo()
+    { return activeServerInfo.get().getServerInfo(); }
+
+    /**
+     * Registers a task to be run each time a refresh of active server information completes.
+     * @param listener The task to run after each refresh
+     */
+    public static void addRefreshListener(Runnable listener)
+    { refreshListeners.add(listener); }
+
+    /**
+     * Provides access to active server information without pinging the network, unless the cached information is older
+     * than the configured maximum staleness; in that case, a refresh is forced.
+     * @return a CompletableFuture that completes immediately if the cached activeServerInfo is recent enough, or
+     * otherwise when a forced refresh has completed
+     */
+    public static CompletableFuture<Void> getCachedServerInfoFuture()
+    {
+        // Use the cached server information if it is recent enough
+        if (System.currentTimeMillis() - lastRefreshTime <= ConfigUtil.getMaxServerInfoStaleness())
+            return CompletableFuture.completedFuture(null);
+
+        // Otherwise, force a refresh
+        return getServerInfoFuture();
+    }
 
     /**
      * Updates the ActiveServerUtil's activeServerInfo field by pinging all network servers, handling successful
      * and failed pings, and extracting/storing correlating information.
+     * <p>
+     * If a refresh is already in progress, no new pings are sent; the in-flight refresh's CompletableFuture is returned
+     * instead, so that a burst of callers costs a single sweep of the network.
      * @return a CompletableFuture that completes when all ping operations have completed, allowing other methods
      * to wait on this method's completion
      */
     public static CompletableFuture<Void> getServerInfoFuture()
     {
+        while (true)
+        {
+            // Share the in-flight refresh, if there is one
+            CompletableFuture<Void> refresh = inFlightRefresh.get();
+            if (refresh != null)
+                return refresh;
+
+            // Otherwise, attempt to claim the right to start a new refresh (another caller may have beaten us to it)
+            CompletableFuture<Void> newRefresh = new CompletableFuture<>();
+            if (!inFlightRefresh.compareAndSet(null, newRefresh))
+                continue;
+
+            refreshServerInfo().whenComplete((ignored, ex) ->
+            {
+                // Stop sharing this refresh before completing it, so callers reacting to its completion start a new one
+                inFlightRefresh.compareAndSet(newRefresh, null);
+
+                if (ex != null)
+                    newRefresh.completeExceptionally(ex);
+                else
+                    newRefresh.complete(null);
+            });
+
+            return newRefresh;
+        }
+    }
+
+    /**
+     * Pings all network servers that have not sent a recent heartbeat (and whose circuit breaker allows it) and records
+     * the results in activeServerInfo.
+     * @return a CompletableFuture that completes when all ping operations have completed or timed out
+     */
+    private static CompletableFuture<Void> refreshServerInfo()
+    {
+        // Track when this refresh began so that cached information is never considered fresher than it is
+        long refreshStartTime = System.currentTimeMillis();
+
         // Initialize a list to hold/track all server ping results
         List<CompletableFuture<ServerPing>> pingResults = new ArrayList<>();
 
-        // For every server on the network...
+        // Ping every server on the network that has gone quiet and store the ping results
         for (RegisteredServer server : MCMG_NetworkHandler.getProxy().getAllServers())
+            if (shouldPing(server.getServerInfo().getName(), refreshStartTime))
+                pingResults.add(pingServer(server));
+        // Also ping instances that are not registered with the proxy yet, so they are detected as soon as they are ready
+        for (RegisteredServer server : ServerRegistryUtil.getUnregisteredServers())
+            if (shouldPing(server.getServerInfo().getName(), refreshStartTime))
+                pingResults.add(pingServer(server));
+
+        // Return a CompletableFuture that completes when all ping operations complete (and refresh listeners have run)
+        return CompletableFuture.allOf(pingResults.toArray(new CompletableFuture[0])).thenRun(() ->
         {
-            // Retrieve and store the server's name
-            String serverName = server.getServerInfo().getName();
+            lastRefreshTime = Math.max(lastRefreshTime, refreshStartTime);
+            notifyRefreshListeners();
+        });
+    }
 
-            // Ping the server asynchronously
-            CompletableFuture<ServerPing> futurePing = server.ping().thenApplyAsync((ServerPing ping) ->
-            {
-                // Successful ping -> store server information
-                activeServerInfo.put(serverName, new ServerInfoPackage(ping, serverName));
+    /**
+     * Runs every registered refresh listener; a failing listener does not prevent the others from running.
+     */
+    private static void notifyRefreshListeners()
+    {
+        for (Runnable listener : refreshListeners)
+        {
+            try { listener.run(); }
+            catch (Exception ex)
+            { MCMG_NetworkHandler.getLogger().error("A server info refresh listener failed: {}", ex.getMessage()); }
+        }
+    }
 
-                //TODO remove
-                MCMG_NetworkHandler.getLogger().info("Pinged {}! The server has {} out of {} players online.", serverName,
-                        activeServerInfo.get(serverName).getOnlinePlayerCount(), activeServerInfo.get(serverName).getMaximumPlayerCount());
+    /**
+     * @param serverName The name of a server
+     * @param currentTime The current system time (in milliseconds)
+     * @return Whether or not the server should be pinged by a refresh: it has gone quiet and its circuit breaker allows it
+     */
+    private static boolean shouldPing(String serverName, long currentTime)
+    { return !hasRecentHeartbeat(serverName, currentTime) && CircuitBreakerUtil.allowPing(serverName, currentTime); }
 
-                return ping;
-            }).exceptionally((Throwable ex) ->
-            {
-                // Failed ping -> remove this server from active server list
-                activeServerInfo.remove(serverName);
+    /**
+     * Pings the provided server and updates its activeServerInfo entry according to the result. If the server is
+     * already being pinged, the in-flight ping is shared rather than sending another one. A ping that takes longer
+     * than the configured ping timeout fails, so a hung server cannot hold up a refresh.
+     * @param server The server to ping
+     * @return a CompletableFuture that completes when the ping has been handled; completes with null if the ping failed
+     */
+    private static CompletableFuture<ServerPing> pingServer(RegisteredServer server)
+    {
+        // Retrieve and store the server's name
+        String serverName = server.getServerInfo().getName();
 
-                MCMG_NetworkHandler.getLogger().warn("Failed to ping " + serverName + ": " + ex.getMessage());   //TODO remove
-                return null;
-            });
+        CompletableFuture<ServerPing> futurePing = inFlightPings.computeIfAbsent(serverName, name ->
+                // Ping the server asynchronously
+                server.ping().orTimeout(ConfigUtil.getPingTimeout(), TimeUnit.MILLISECONDS).thenApplyAsync((ServerPing ping) ->
+                {
+                    // Successful ping -> store server information
+                    CircuitBreakerUtil.recordSuccess(serverName);
+                    ServerInfoPackage serverInfo = getOrAddServerInfo(serverName);
+                    serverInfo.update(ping);
+                    // A starting instance that answers a ping has finished starting
+                    ServerLifecycleUtil.markReady(serverName);
 
-            // Store the server ping result
-            pingResults.add(futurePing);
+                    MCMG_NetworkHandler.getLogger().debug("Pinged {}! The server has {} out of {} players online.", serverName,
+                            serverInfo.getOnlinePlayerCount(), serverInfo.getMaximumPlayerCount());
+
+                    return ping;
+                }).exceptionally((Throwable ex) ->
+                {
+                    // Failed ping -> remove this server from active server list once its circuit breaker opens; until
+                    // then, its last known information is kept. Instances that are still booting are expected to
+                    // refuse pings, so they never trip the breaker.
+                    if (ServerLifecycleUtil.getState(serverName) != InstanceState.STARTING
+                            && CircuitBreakerUtil.recordFailure(serverName, System.currentTimeMillis()))
+                        removeServer(serverName);
+
+                    MCMG_NetworkHandler.getLogger().debug("Failed to ping {}: {}", serverName, ex.getMessage());
+                    return null;
+                }));
+
+        // Once handled, stop sharing this ping so that the next refresh pings the server again
+        futurePing.whenComplete((ping, ex) -> inFlightPings.remove(serverName, futurePing));
+
+        return futurePing;
+    }
+
+    /**
+     * @param serverName The name of a server
+     * @param currentTime The current system time (in milliseconds)
+     * @return Whether or not the server's latest heartbeat is recent enough that it does not need to be pinged
+     */
+    private static boolean hasRecentHeartbeat(String serverName, long currentTime)
+    {
+        Long lastHeartbeatTime = lastHeartbeatTimes.get(serverName);
+        return lastHeartbeatTime != null && currentTime - lastHeartbeatTime <= ConfigUtil.getHeartbeatTimeout();
+    }
+
+    /**
+     * Updates a server's activeServerInfo entry from a heartbeat sent by the server, without pinging it.
+     * @param serverName The name of the server that sent the heartbeat
+     * @param onlinePlayerCount The number of players online the server
+     * @param maximumPlayerCount The maximum number of players that can be online the server
+     * @param tps The ticks per second of the server
+     * @param state The lifecycle state reported by the server
+     */
+    public static void recordHeartbeat(String serverName, int onlinePlayerCount, int maximumPlayerCount, double tps, InstanceState state)
+    {
+        // A server that is shutting down is removed immediately, and will be pinged (and fail) if it keeps running
+        if (state == InstanceState.STOPPED)
+        {
+            removeServer(serverName);
+            return;
         }
 
-        // Return a CompletableFuture that completes when all ping operations complete
-        return CompletableFuture.allOf(pingResults.toArray(new CompletableFuture[0]));
+        lastHeartbeatTimes.put(serverName, System.currentTimeMillis());
+        CircuitBreakerUtil.recordSuccess(serverName);
+
+        // A server that is still starting cannot accept players yet
+        if (state == InstanceState.STARTING)
+            return;
+
+        // Store server information
+        getOrAddServerInfo(serverName).update(onlinePlayerCount, maximumPlayerCount, tps);
+
+        ServerLifecycleUtil.reportState(serverName, state);
+    }
+
+    /**
+     * @param serverName The name of a server that responded to a ping or sent a heartbeat
+     * @return The server's ServerInfoPackage; a new (empty) one is added to the active servers if it was not active
+     */
+    private static ServerInfoPackage getOrAddServerInfo(String serverName)
+    {
+        // Routine updates of an already active server do not replace the snapshot
+        ServerInfoPackage serverInfo = activeServerInfo.get().get(serverName);
+        if (serverInfo != null)
+            return serverInfo;
+
+        ServerInfoPackage newServerInfo = new ServerInfoPackage(serverName);
+        return activeServerInfo.updateAndGet(snapshot -> snapshot.get(serverName) != null ? snapshot : snapshot.with(newServerInfo))
+                .get(serverName);
+    }
+
+    /**
+     * Immediately removes a server from the active servers (e.g. because it is known to have stopped), without waiting
+     * for a ping to fail.
+     * @param serverName The name of the server that is no longer active
+     */
+    public static void removeServer(String serverName)
+    {
+        activeServerInfo.updateAndGet(snapshot -> snapshot.without(serverName));
+        SeatReservationUtil.clearReservations(serverName);
+        lastHeartbeatTimes.remove(serverName);
     }
 
     /**
      * For accurate results, should only be executed by a thenRun(() -> ) method call on the CompletableFuture returned
-     * by the ActiveServerUtil getServerInfoFuture method.
+     * by the ActiveServerUtil getServerInfoFuture or getCachedServerInfoFuture methods.
      * @param serverType The type of server to be targeted
-     * @return The name of a server of the specified type (if one was found). If multiple valid servers are found, the
-     * name of the server with the most online players (and room for more) is returned. If no valid servers are found,
-     * an empty string is returned.
+     * @return The name of a server of exactly the specified type (if one was found). If multiple valid servers are found,
+     * the name of the READY server with the most online players (and room for more, counting reserved seats) is
+     * returned. If no valid servers are found, an empty string is returned.
      */
     public static String findTransferableServerName(String serverType)
-    {
-        String targetServer = "";
-        // Store count used to find available server with most active players
-        int maxPlayerCount = -1;
+    { return findTransferableServerName(serverType, 1); }
+
+    /**
+     * Identifies a transferable server the same way as findTransferableServerName(serverType), but requires room for
+     * the provided number of players (e.g. a party that must land on the same server).
+     * @param serverType The type of server to be targeted
+     * @param seatCount The number of players that need room on the server
+     * @return The name of the fullest READY server with room for all the players, or an empty string if none was found
+     */
+    public static String findTransferableServerName(String serverType, int seatCount)
+    { return findTransferableServerName(serverType, seatCount, Map.of()); }
 
-        // Filter through active servers to identify target server for transferring
-        for (ServerInfoPackage serverInfo : activeServerInfo.values())
+    /**
+     * @param serverType The type of server to be targeted
+     * @param seatCount The number of players that need room on the server
+     * @param plannedSeats A map of server names and the number of seats on them already planned for other players
+     * @return The name of the fullest READY server with room for all the players (counting planned seats), or an empty
+     * string if none was found
+     */
+    private static String findTransferableServerName(String serverType, int seatCount, Map<String, Integer> plannedSeats)
+    {
+        // Target the fullest server with room, preferring the lowest instance number among equally full servers
+        ServerInfoPackage target = null;
+        int targetPlayerCount = -1;
+        for (ServerInfoPackage serverInfo : getSnapshot().getServers(serverType))
         {
-            // Only consider servers of the specified type
-            if (!serverInfo.getServerName().contains(serverType)) continue;
-            // Only consider servers with room for another player
-            if (serverInfo.getOnlinePlayerCount() == serverInfo.getMaximumPlayerCount()) continue;
+            String serverName = serverInfo.getServerName();
+            // Skip instances that are not READY (e.g. DRAINING instances)
+            if (!ServerLifecycleUtil.isTransferable(serverName))
+                continue;
 
-            // Only update the target server if this server has more players than the last target server
-            if (serverInfo.getOnlinePlayerCount() > maxPlayerCount)
+            if (!hasUnreservedRoom(serverInfo, seatCount + plannedSeats.getOrDefault(serverName, 0)))
+                continue;
+
+            int playerCount = serverInfo.getOnlinePlayerCount();
+            if (playerCount > targetPlayerCount
+                    || (playerCount == targetPlayerCount && serverInfo.getInstanceNumber() < target.getInstanceNumber()))
             {
-                targetServer = serverInfo.getServerName();
-                maxPlayerCount = serverInfo.getOnlinePlayerCount();
+                target = serverInfo;
+                targetPlayerCount = playerCount;
             }
         }
 
-        return targetServer;
+        return target == null ? "" : target.getServerName();
+    }
+
+    /**
+     * Identifies a transferable server the same way as findTransferableServerName, and reserves a seat on it for the
+     * player being transferred. Reservations for the same server type are made one at a time, so concurrent transfer
+     * requests never overfill a server.
+     * @param serverType The type of server to be targeted
+     * @return The name of the server a seat was reserved on, or an empty string if no valid servers were found
+     */
+    public static String reserveTransferableServerName(String serverType)
+    {
+        List<String> serverNames = reserveTransferableServerNames(serverType, List.of(1));
+        return serverNames.isEmpty() ? "" : serverNames.get(0);
+    }
+
+    /**
+     * Places several groups of players (e.g. parties) at once as a single decision: each group is planned onto a
+     * single transferable server with room for the whole group, placing the largest groups first so that small groups
+     * do not take the room large groups need. Seats are only reserved if every group could be placed. Reservations for
+     * the same server type are made one at a time, so concurrent transfer requests never overfill a server.
+     * @param serverType The type of server to be targeted
+     * @param seatCounts The number of players in each group
+     * @return The names of the servers seats were reserved on, in the same order as the provided groups; an empty list
+     * if any group could not be placed (in which case no seats were reserved)
+     */
+    public static List<String> reserveTransferableServerNames(String serverType, List<Integer> seatCounts)
+    {
+        String[] serverNames = new String[seatCounts.size()];
+
+        // Place the largest groups first
+        Integer[] placementOrder = new Integer[seatCounts.size()];
+        for (int i=0; i<placementOrder.length; i++)
+            placementOrder[i] = i;
+        Arrays.sort(placementOrder, Comparator.comparing((Integer i) -> seatCounts.get(i)).reversed());
+
+        synchronized (reservationLocks.computeIfAbsent(serverType, type -> new Object()))
+        {
+            // Plan every group's server before reserving any seats
+            Map<String, Integer> plannedSeats = new HashMap<>();
+            for (int i : placementOrder)
+            {
+                String serverName = findTransferableServerName(serverType, seatCounts.get(i), plannedSeats);
+                if (serverName.isEmpty())
+                    return List.of();
+
+                plannedSeats.merge(serverName, seatCounts.get(i), Integer::sum);
+                serverNames[i] = serverName;
+            }
+
+            for (Map.Entry<String, Integer> entry : plannedSeats.entrySet())
+                SeatReservationUtil.reserveSeats(entry.getKey(), entry.getValue());
+        }
+
+        return Arrays.asList(serverNames);
+    }
+
+    /**
+     * For accurate results, should only be executed by a thenRun(() -> ) method call on the CompletableFuture returned
+     * by the ActiveServerUtil getServerInfoFuture or getCachedServerInfoFuture methods.
+     * @param serverType The type of server to be counted
+     * @return The number of READY servers of exactly the specified type that have no online players and no reserved seats
+     */
+    public static int countIdleServers(String serverType)
+    {
+        int idleServerCount = 0;
+        for (ServerInfoPackage serverInfo : getSnapshot().getServers(serverType))
+        {
+            String serverName = serverInfo.getServerName();
+            if (ServerLifecycleUtil.isTransferable(serverName) && serverInfo.getOnlinePlayerCount() == 0
+                    && SeatReservationUtil.getReservedSeatCount(serverName) == 0)
+                idleServerCount++;
+        }
+
+        return idleServerCount;
+    }
+
+    /**
+     * @param serverType A server type recognized by the Velocity proxy server's MCMG_NetworkHandler plugin
+     * @return The largest maximum player count of the active servers of exactly the specified type; -1 if no active
+     * server of the type has reported one
+     */
+    public static int getInstanceCapacity(String serverType)
+    {
+        int instanceCapacity = -1;
+        for (ServerInfoPackage serverInfo : getSnapshot().getServers(serverType))
+            if (serverInfo.getMaximumPlayerCount() > 0)
+                instanceCapacity = Math.max(instanceCapacity, serverInfo.getMaximumPlayerCount());
+
+        return instanceCapacity;
+    }
+
+    /**
+     * @param serverInfo The information of the server to check
+     * @param seatCount The number of players that need room on the server
+     * @return Whether or not the server has room for the players once its reserved seats are taken
+     */
+    private static boolean hasUnreservedRoom(ServerInfoPackage serverInfo, int seatCount)
+    {
+        int reservedSeatCount = SeatReservationUtil.getReservedSeatCount(serverInfo.getServerName());
+        return serverInfo.getOnlinePlayerCount() + reservedSeatCount + seatCount <= serverInfo.getMaximumPlayerCount();
     }
 
     /**
      * For accurate results, should only be executed by a thenRun(() -> ) method call on the CompletableFuture returned
-     * by the ActiveServerUtil getServerInfoFuture method.
+     * by the ActiveServerUtil getServerInfoFuture or getCachedServerInfoFuture methods.
      * @param n The number of server names to return
      * @param serverType The type of server to consider while evaluating the return value
-     * @return The n server names (of the provided server type) ending in the highest numbers
+     * @return The n server names (of the provided server type) ending in the highest numbers, in ascending instance
+     * number order
      * @throws InvalidParameterException if n is greater than the number of active server type instances
      */
     public static List<String> getHighestNumberActiveServerNames(int n, String serverType) throws InvalidParameterException
     {
-        List<String> serverTypeInstanceNames = new ArrayList<>();
-
-        // Only consider names of servers of the specified type
-        for (ServerInfoPackage serverInfo : activeServerInfo.values())
-        {
-            String serverName = serverInfo.getServerName();
-            if (serverName.contains(serverType))
-                serverTypeInstanceNames.add(serverName);
-        }
+        ServerInfoSnapshot snapshot = getSnapshot();
+        BitSet instanceNumbers = snapshot.getInstanceNumbers(serverType);
 
         // Ensure valid n parameter was entered
-        if (n > serverTypeInstanceNames.size())
+        if (n > instanceNumbers.cardinality())
             throw new InvalidParameterException("The requested number of server names to return (n) was greater than the number of active server type instances!");
 
-        // Sort filtered server names based on the numeric value of their endings
-        serverTypeInstanceNames.sort((name1, name2) -> {
-            int number1 = Integer.parseInt(name1.replaceAll("\\D", ""));
-            int number2 = Integer.parseInt(name2.replaceAll("\\D", ""));
-            return Integer.compare(number1, number2);
-        });
+        // Find the lowest of the n highest instance numbers
+        int lowestKept = instanceNumbers.length();
+        for (int i=0; i<n; i++)
+            lowestKept = instanceNumbers.previousSetBit(lowestKept - 1);
+
+        // Rank the kept instance numbers in ascending order with a single walk over the set bits
+        int[] keptInstanceNumbers = new int[n];
+        for (int i=0, instanceNumber = lowestKept; i<n; i++, instanceNumber = instanceNumbers.nextSetBit(instanceNumber + 1))
+            keptInstanceNumbers[i] = instanceNumber;
+
+        // Collect the kept instances' names in ascending instance number order
+        String[] serverNames = new String[n];
+        for (ServerInfoPackage serverInfo : snapshot.getServers(serverType))
+        {
+            int instanceNumber = serverInfo.getInstanceNumber();
+            int rank = instanceNumber < 0 ? -1 : Arrays.binarySearch(keptInstanceNumbers, instanceNumber);
+            if (rank >= 0)
+                serverNames[rank] = serverInfo.getServerName();
+        }
 
-        // Return sliced list to get the last n elements
-        return serverTypeInstanceNames.subList(serverTypeInstanceNames.size() - n, serverTypeInstanceNames.size());
+        return Arrays.asList(serverNames);
     }
 }
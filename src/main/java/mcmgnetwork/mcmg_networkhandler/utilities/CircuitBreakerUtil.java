@@ -0,0 +1,116 @@
+package mcmgnetwork.mcmg_networkhandler.utilities;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Description: <p>
+ *  A utility class holding static data and functions that track a circuit breaker for each network server's pings. A
+ *  breaker is closed while the server answers. After enough consecutive failures it opens, and the server is skipped
+ *  by refreshes (and removed from the active servers) until a backoff period passes. The breaker then half-opens to
+ *  allow a single trial ping: success closes it, failure opens it again with a doubled backoff. This keeps flapping
+ *  servers from being pinged, dropped, and re-added on every refresh.
+ *
+ *  <p>Author(s): Miles Bovero
+ *  <p>Date Created: 10/17/26
+ */
+public class CircuitBreakerUtil
+{
+
+    /**
+     * The state of a server's circuit breaker; instances must only be accessed while synchronized on themselves
+     */
+    private static class Breaker
+    {
+        /**
+         * The number of pings in a row that have failed
+         */
+        private int consecutiveFailures = 0;
+
+        /**
+         * The number of times in a row the breaker has opened without a successful ping in between
+         */
+        private int openCount = 0;
+
+        /**
+         * The system time (in milliseconds) until which the breaker is open; 0 while closed
+         */
+        private long openUntil = 0;
+
+        /**
+         * Whether or not a trial ping has been allowed since the breaker's open period ended
+         */
+        private boolean halfOpen = false;
+    }
+
+    /**
+     * A map of server names and their circuit breakers; servers without a breaker are treated as closed
+     */
+    private static final ConcurrentHashMap<String, Breaker> breakers = new ConcurrentHashMap<>();
+
+    /**
+     * Checks if the specified server may be pinged. Once an open breaker's backoff has passed, a single trial ping is
+     * allowed (half-open) and any further pings are refused until that ping's result is recorded.
+     * @param serverName The name of the server to ping
+     * @param currentTime The current system time (in milliseconds)
+     * @return Whether or not the server may be pinged
+     */
+    public static boolean allowPing(String serverName, long currentTime)
+    {
+        Breaker breaker = breakers.get(serverName);
+        if (breaker == null)
+            return true;
+
+        synchronized (breaker)
+        {
+            if (breaker.openUntil == 0)
+                return true;
+            if (breaker.halfOpen || currentTime < breaker.openUntil)
+                return false;
+
+            breaker.halfOpen = true;
+            return true;
+        }
+    }
+
+    /**
+     * Closes the specified server's circuit breaker (e.g. because the server answered a ping or sent a heartbeat).
+     * @param serverName The name of the server that responded
+     */
+    public static void recordSuccess(String serverName)
+    { breakers.remove(serverName); }
+
+    /**
+     * Records a failed ping of the specified server, opening its circuit breaker if the configured number of
+     * consecutive failures has been reached or if the failed ping was a half-open trial.
+     * @param serverName The name of the server that failed to answer
+     * @param currentTime The current system time (in milliseconds)
+     * @return Whether or not the server's breaker is now open
+     */
+    public static boolean recordFailure(String serverName, long currentTime)
+    {
+        Breaker breaker = breakers.computeIfAbsent(serverName, name -> new Breaker());
+        synchronized (breaker)
+        {
+            breaker.consecutiveFailures++;
+            if (!breaker.halfOpen && breaker.consecutiveFailures < ConfigUtil.getCircuitBreakerFailureThreshold())
+                return breaker.openUntil != 0;
+
+            // Open (or re-open) the breaker, doubling the backoff each time it re-opens
+            long backoff = ConfigUtil.getCircuitBreakerOpenTime();
+            for (int i=0; i<breaker.openCount && backoff < ConfigUtil.getCircuitBreakerMaxOpenTime(); i++)
+                backoff *= 2;
+            breaker.openUntil = currentTime + Math.min(backoff, ConfigUtil.getCircuitBreakerMaxOpenTime());
+            breaker.openCount++;
+            breaker.halfOpen = false;
+            return true;
+        }
+    }
+
+    /**
+     * Forgets the specified server's circuit breaker (e.g. because the instance stopped, and its name may be reused by
+     * a new instance).
+     * @param serverName The name of the server to forget
+     */
+    public static void clearBreaker(String serverName)
+    { breakers.remove(serverName); }
+}
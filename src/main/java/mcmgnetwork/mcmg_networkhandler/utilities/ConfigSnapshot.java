@@ -0,0 +1,275 @@
+package mcmgnetwork.mcmg_networkhandler.utilities;
+
+import dev.dejvokep.boostedyaml.block.implementation.Section;
+import dev.dejvokep.boostedyaml.route.Route;
+import lombok.Getter;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Description: <p>
+ *  An immutable, fully parsed and validated copy of the MCMG_NetworkHandler plugin's configuration. A snapshot is
+ *  built once per (re)load of the config file, so reading a config value never parses the config again, and a config
+ *  error is reported when the config is loaded rather than in the middle of a request.
+ *
+ *  <p>Author(s): Miles Bovero
+ *  <p>Date Created: 10/17/26
+ */
+@Getter
+public class ConfigSnapshot
+{
+
+    /**
+     * The JVM settings that instances of a server type are launched with
+     * @param maxHeap The maximum heap size (in megabytes)
+     * @param minHeap The initial heap size (in megabytes)
+     * @param flags Additional JVM flags (GC settings, etc.)
+     * @param overhead The memory (in megabytes) an instance is expected to use beyond its maximum heap size
+     */
+    public record JvmProfile(int maxHeap, int minHeap, List<String> flags, int overhead) {}
+
+    /**
+     * The JVM profile of server types without a configured profile
+     */
+    private static final JvmProfile DEFAULT_JVM_PROFILE = new JvmProfile(1024, 512, List.of(), 256);
+
+    private final Map<String, Integer> maxServerTypeCounts;
+    private final int minInstancePort;
+    private final int maxInstancePort;
+    private final String instanceHost;
+    private final int serverPollInterval;
+    private final int maxServerInfoStaleness;
+    private final int seatReservationTime;
+    private final int pendingTransferTimeout;
+    private final int serverStartupTimeout;
+    private final Map<String, Integer> warmStandbyCounts;
+    private final String templateCloneMode;
+    private final int templateArchiveCheckInterval;
+    private final int serverStopTimeout;
+    private final int maxServerRestarts;
+    private final int serverRestartBackoff;
+    private final Map<String, JvmProfile> jvmProfiles;
+    private final int hostMemoryBudget;
+    private final String memoryBudgetPolicy;
+    private final double scaleDownFillThreshold;
+    private final int scaleDownIdleTime;
+    private final int scaleDownCooldown;
+    private final Map<String, Integer> minServerTypeCounts;
+    private final int drainTimeout;
+    private final int demandWindow;
+    private final int defaultStartupTime;
+    private final double scaleUpFillThreshold;
+    private final int mainHubDebounceWindow;
+    private final int heartbeatTimeout;
+    private final int pingTimeout;
+    private final int circuitBreakerFailureThreshold;
+    private final int circuitBreakerOpenTime;
+    private final int circuitBreakerMaxOpenTime;
+    private final int provisioningThreads;
+    private final int maxParallelStarts;
+
+    /**
+     * Parses and validates every value of the provided config.
+     * @param config The loaded config file
+     * @throws IllegalArgumentException Indicates a config value is missing, of the wrong type, or out of range
+     */
+    public ConfigSnapshot(Section config)
+    {
+        maxServerTypeCounts = readIntMap(config, "max-server-type-instance-counts", 0);
+
+        minInstancePort = readInt(config, "instance-ports.min", 25600, 1, 65535);
+        maxInstancePort = readInt(config, "instance-ports.max", 25999, minInstancePort, 65535);
+        instanceHost = readString(config, "instance-host", "127.0.0.1", Set.of());
+
+        serverPollInterval = readInt(config, "server-poll-interval-millis", 2000, 1, Integer.MAX_VALUE);
+        maxServerInfoStaleness = readInt(config, "max-server-info-staleness-millis", 5000, 0, Integer.MAX_VALUE);
+        seatReservationTime = readInt(config, "seat-reservation-millis", 10000, 0, Integer.MAX_VALUE);
+        pendingTransferTimeout = readInt(config, "pending-transfer-timeout-seconds", 60, 1, Integer.MAX_VALUE);
+        serverStartupTimeout = readInt(config, "server-startup-timeout-seconds", 180, 1, Integer.MAX_VALUE);
+        warmStandbyCounts = readIntMap(config, "warm-standby-instances", 0);
+
+        templateCloneMode = readString(config, "template-clone-mode", TemplateCloneUtil.COPY_MODE,
+                Set.of(TemplateCloneUtil.COPY_MODE, TemplateCloneUtil.LINK_MODE, TemplateCloneUtil.ARCHIVE_MODE));
+        templateArchiveCheckInterval = readInt(config, "template-archive-check-seconds", 60, 0, Integer.MAX_VALUE);
+
+        serverStopTimeout = readInt(config, "server-stop-timeout-seconds", 30, 1, Integer.MAX_VALUE);
+        maxServerRestarts = readInt(config, "max-server-restarts", 3, 0, Integer.MAX_VALUE);
+        serverRestartBackoff = readInt(config, "server-restart-backoff-seconds", 5, 0, Integer.MAX_VALUE);
+
+        jvmProfiles = readJvmProfiles(config);
+        hostMemoryBudget = readInt(config, "host-memory-budget-mb", 0, 0, Integer.MAX_VALUE);
+        memoryBudgetPolicy = readString(config, "memory-budget-policy", MemoryBudgetUtil.QUEUE_POLICY,
+                Set.of(MemoryBudgetUtil.QUEUE_POLICY, MemoryBudgetUtil.REFUSE_POLICY));
+
+        scaleDownFillThreshold = readDouble(config, "scale-down.max-fill-fraction", 0.25, 0, 1);
+        scaleDownIdleTime = readInt(config, "scale-down.idle-seconds", 120, 0, Integer.MAX_VALUE);
+        scaleDownCooldown = readInt(config, "scale-down.cooldown-seconds", 60, 0, Integer.MAX_VALUE);
+        minServerTypeCounts = readIntMap(config, "scale-down.min-instances", 0);
+        drainTimeout = readInt(config, "scale-down.drain-timeout-seconds", 30, 1, Integer.MAX_VALUE);
+
+        demandWindow = readInt(config, "autoscale.window-seconds", 60, 1, Integer.MAX_VALUE);
+        defaultStartupTime = readInt(config, "autoscale.default-startup-seconds", 30, 1, Integer.MAX_VALUE);
+        scaleUpFillThreshold = readDouble(config, "autoscale.target-fill-fraction", 0.8, 0.01, 1);
+
+        mainHubDebounceWindow = readInt(config, "main-hub-debounce-millis", 1000, 0, Integer.MAX_VALUE);
+        heartbeatTimeout = readInt(config, "heartbeat-timeout-millis", 5000, 0, Integer.MAX_VALUE);
+
+        pingTimeout = readInt(config, "ping-timeout-millis", 1000, 1, Integer.MAX_VALUE);
+        circuitBreakerFailureThreshold = readInt(config, "circuit-breaker.failure-threshold", 3, 1, Integer.MAX_VALUE);
+        circuitBreakerOpenTime = readInt(config, "circuit-breaker.open-millis", 5000, 1, Integer.MAX_VALUE);
+        circuitBreakerMaxOpenTime = readInt(config, "circuit-breaker.max-open-millis", 60000, circuitBreakerOpenTime, Integer.MAX_VALUE);
+
+        provisioningThreads = readInt(config, "provisioning.threads", 2, 1, 64);
+        maxParallelStarts = readInt(config, "provisioning.max-parallel-starts", 1, 1, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param serverType A server type recognized by the Velocity proxy server's MCMG_NetworkHandler plugin
+     * @return The maximum number of servers of the specified type allowed on the network; 0 if none is configured
+     */
+    public int getMaxServerTypeCount(String serverType)
+    { return maxServerTypeCounts.getOrDefault(serverType, 0); }
+
+    /**
+     * @param serverType A server type recognized by the Velocity proxy server's MCMG_NetworkHandler plugin
+     * @return The minimum number of idle, READY instances of the specified server type to keep on standby
+     */
+    public int getWarmStandbyCount(String serverType)
+    { return warmStandbyCounts.getOrDefault(serverType, 0); }
+
+    /**
+     * @param serverType A server type recognized by the Velocity proxy server's MCMG_NetworkHandler plugin
+     * @return The minimum number of READY instances of the specified server type that scale-down always keeps
+     */
+    public int getMinServerTypeCount(String serverType)
+    { return minServerTypeCounts.getOrDefault(serverType, 1); }
+
+    /**
+     * @param serverType A server type recognized by the Velocity proxy server's MCMG_NetworkHandler plugin
+     * @return The JVM profile of the specified server type
+     */
+    public JvmProfile getJvmProfile(String serverType)
+    { return jvmProfiles.getOrDefault(serverType, DEFAULT_JVM_PROFILE); }
+
+    /**
+     * @param config The loaded config file
+     * @param route The route of the value
+     * @param defaultValue The value used if the config does not contain the route
+     * @param minValue The smallest valid value
+     * @param maxValue The largest valid value
+     * @return The whole number at the provided route
+     * @throws IllegalArgumentException Indicates the value is not a whole number or is out of range
+     */
+    private static int readInt(Section config, String route, int defaultValue, int minValue, int maxValue)
+    {
+        Route path = Route.fromString(route);
+        if (config.contains(path) && !config.isInt(path))
+            throw new IllegalArgumentException(route + " must be a whole number");
+
+        int value = config.getInt(path, defaultValue);
+        if (value < minValue || value > maxValue)
+            throw new IllegalArgumentException(route + " must be between " + minValue + " and " + maxValue + ", but is " + value);
+
+        return value;
+    }
+
+    /**
+     * @param config The loaded config file
+     * @param route The route of the value
+     * @param defaultValue The value used if the config does not contain the route
+     * @param minValue The smallest valid value
+     * @param maxValue The largest valid value
+     * @return The number at the provided route
+     * @throws IllegalArgumentException Indicates the value is not a number or is out of range
+     */
+    private static double readDouble(Section config, String route, double defaultValue, double minValue, double maxValue)
+    {
+        Route path = Route.fromString(route);
+        if (config.contains(path) && !config.isNumber(path))
+            throw new IllegalArgumentException(route + " must be a number");
+
+        double value = config.getDouble(path, defaultValue);
+        if (value < minValue || value > maxValue)
+            throw new IllegalArgumentException(route + " must be between " + minValue + " and " + maxValue + ", but is " + value);
+
+        return value;
+    }
+
+    /**
+     * @param config The loaded config file
+     * @param route The route of the value
+     * @param defaultValue The value used if the config does not contain the route
+     * @param validValues The valid values; any non-empty value is valid if empty
+     * @return The string at the provided route
+     * @throws IllegalArgumentException Indicates the value is not a string or is not one of the valid values
+     */
+    private static String readString(Section config, String route, String defaultValue, Set<String> validValues)
+    {
+        Route path = Route.fromString(route);
+        if (config.contains(path) && !config.isString(path))
+            throw new IllegalArgumentException(route + " must be a string");
+
+        String value = config.getString(path, defaultValue);
+        if (value.isEmpty() || (!validValues.isEmpty() && !validValues.contains(value)))
+            throw new IllegalArgumentException(route + " must be " + (validValues.isEmpty() ? "non-empty" : "one of " + validValues) + ", but is \"" + value + "\"");
+
+        return value;
+    }
+
+    /**
+     * @param config The loaded config file
+     * @param route The route of a section mapping server types to whole numbers
+     * @param minValue The smallest valid value
+     * @return The server types and whole numbers of the section at the provided route; empty if there is no such section
+     * @throws IllegalArgumentException Indicates a value is not a whole number or is out of range
+     */
+    private static Map<String, Integer> readIntMap(Section config, String route, int minValue)
+    {
+        Map<String, Integer> values = new HashMap<>();
+        for (String serverType : getKeys(config, route))
+            values.put(serverType, readInt(config, route + "." + serverType, minValue, minValue, Integer.MAX_VALUE));
+
+        return Map.copyOf(values);
+    }
+
+    /**
+     * @param config The loaded config file
+     * @return The JVM profiles of every server type with a configured profile
+     * @throws IllegalArgumentException Indicates a profile value is of the wrong type or out of range
+     */
+    private static Map<String, JvmProfile> readJvmProfiles(Section config)
+    {
+        Map<String, JvmProfile> profiles = new HashMap<>();
+        for (String serverType : getKeys(config, "jvm-profiles"))
+        {
+            String route = "jvm-profiles." + serverType;
+            int maxHeap = readInt(config, route + ".max-heap-mb", DEFAULT_JVM_PROFILE.maxHeap(), 1, Integer.MAX_VALUE);
+            int minHeap = readInt(config, route + ".min-heap-mb", Math.min(DEFAULT_JVM_PROFILE.minHeap(), maxHeap), 1, maxHeap);
+            int overhead = readInt(config, route + ".overhead-mb", DEFAULT_JVM_PROFILE.overhead(), 0, Integer.MAX_VALUE);
+
+            Route flagsPath = Route.fromString(route + ".flags");
+            if (config.contains(flagsPath) && !config.isList(flagsPath))
+                throw new IllegalArgumentException(route + ".flags must be a list");
+            List<String> flags = List.copyOf(config.getStringList(flagsPath, List.of()));
+
+            profiles.put(serverType, new JvmProfile(maxHeap, minHeap, flags, overhead));
+        }
+
+        return Map.copyOf(profiles);
+    }
+
+    /**
+     * @param config The loaded config file
+     * @param route The route of a section
+     * @return The keys of the section at the provided route; empty if there is no such section
+     */
+    private static Set<String> getKeys(Section config, String route)
+    {
+        return config.getOptionalSection(Route.fromString(route))
+                .map(section -> section.getRoutesAsStrings(false))
+                .orElse(Set.of());
+    }
+}
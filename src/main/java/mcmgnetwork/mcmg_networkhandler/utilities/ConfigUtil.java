@@ -3,7 +3,6 @@ package mcmgnetwork.mcmg_networkhandler.utilities;
 import com.velocitypowered.api.plugin.PluginContainer;
 import dev.dejvokep.boostedyaml.YamlDocument;
 import dev.dejvokep.boostedyaml.dvs.versioning.BasicVersioning;
-import dev.dejvokep.boostedyaml.route.Route;
 import dev.dejvokep.boostedyaml.settings.dumper.DumperSettings;
 import dev.dejvokep.boostedyaml.settings.general.GeneralSettings;
 import dev.dejvokep.boostedyaml.settings.loader.LoaderSettings;
@@ -12,22 +11,43 @@ import mcmgnetwork.mcmg_networkhandler.MCMG_NetworkHandler;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Path;
+import java.nio.file.*;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Description: <p>
  *  Manages the configuration of the MCMG_NetworkHandler plugin, including the maximum number of server instances
- *  allowed on the network and the port numbers of each server instance.
+ *  allowed on the network and the range of ports leased to server instances.
+ *  <p>
+ *  The config is parsed and validated once per load into an immutable ConfigSnapshot that every getter reads from. The
+ *  config file is watched for changes; each change is loaded into a new snapshot, which replaces the current one
+ *  atomically if it is valid (an invalid config is reported and ignored, keeping the current snapshot).
  *
  *  <p>Author(s): Miles Bovero
  *  <p>Date Created: 5/10/24
  */
 public class ConfigUtil
 {
+    /**
+     * The name of this plugin's config file
+     */
+    private static final String CONFIG_FILE_NAME = "config.yml";
+
     private static YamlDocument config;
 
+    /**
+     * The current parsed config; replaced as a whole whenever the config file is reloaded
+     */
+    private static volatile ConfigSnapshot snapshot;
+
+    /**
+     * Watches this plugin's data folder for changes to the config file
+     */
+    private static WatchService configWatcher;
+
     /**
      * Initializes the Boosted YAML config for this plugin, providing access to the config's contents/data.
      * @param dataDirectory The directory to this plugin's data folder
@@ -36,7 +56,7 @@ public class ConfigUtil
     {
         try
         {
-            config = YamlDocument.create(new File(dataDirectory.toFile(), "config.yml"),
+            config = YamlDocument.create(new File(dataDirectory.toFile(), CONFIG_FILE_NAME),
                     Objects.requireNonNull(ConfigUtil.class.getResourceAsStream("/config.yml")),  // Get config from resources folder & populate defaults into config file
                     GeneralSettings.DEFAULT,
                     LoaderSettings.builder().setAutoUpdate(true).build(), // Config file will update automatically without user interaction
@@ -47,20 +67,117 @@ public class ConfigUtil
 
             config.update();
             config.save();
+            snapshot = new ConfigSnapshot(config);
         } catch (IOException ex)
         {
             MCMG_NetworkHandler.getLogger().error("Could not create/load plugin config! Plugin shutting down...");
             shutdownPlugin();
+            return;
         }
         catch (NullPointerException ex)
         {
             MCMG_NetworkHandler.getLogger().error("Plugin .jar was built without a config file! Plugin shutting down...");
             shutdownPlugin();
+            return;
+        }
+        catch (IllegalArgumentException ex)
+        {
+            MCMG_NetworkHandler.getLogger().error("Plugin config is invalid: {}! Plugin shutting down...", ex.getMessage());
+            shutdownPlugin();
+            return;
         }
 
+        startWatchingConfig(dataDirectory);
         MCMG_NetworkHandler.getLogger().info("MCMG_NetworkHandler was successfully configured!");
     }
 
+    /**
+     * Reloads the config file and, if it is valid, atomically replaces the current config snapshot with it.
+     * @return Whether or not the config was reloaded
+     */
+    public static boolean reloadConfig()
+    {
+        try
+        {
+            config.reload();
+            snapshot = new ConfigSnapshot(config);
+        }
+        catch (IOException | IllegalArgumentException ex)
+        {
+            MCMG_NetworkHandler.getLogger().error("Could not reload plugin config, so the previous config remains in use: {}", ex.getMessage());
+            return false;
+        }
+
+        MCMG_NetworkHandler.getLogger().info("MCMG_NetworkHandler config was reloaded!");
+        return true;
+    }
+
+    /**
+     * Stops watching the config file for changes.
+     */
+    public static void stopWatchingConfig()
+    {
+        if (configWatcher == null)
+            return;
+
+        try { configWatcher.close(); }
+        catch (IOException ex)
+        { MCMG_NetworkHandler.getLogger().warn("Could not stop watching the plugin config: {}", ex.getMessage()); }
+    }
+
+    /**
+     * Begins watching the config file for changes on a background thread, reloading the config after each change.
+     * @param dataDirectory The directory to this plugin's data folder
+     */
+    private static void startWatchingConfig(Path dataDirectory)
+    {
+        try
+        {
+            configWatcher = FileSystems.getDefault().newWatchService();
+            dataDirectory.register(configWatcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+        catch (IOException ex)
+        {
+            MCMG_NetworkHandler.getLogger().warn("Could not watch the plugin config for changes; it will not be reloaded automatically: {}", ex.getMessage());
+            return;
+        }
+
+        Thread watcherThread = new Thread(() -> watchConfig(configWatcher), "MCMG-config-watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+    }
+
+    /**
+     * Reloads the config whenever the provided watch service reports a change to the config file, until the watch
+     * service is closed.
+     * @param watcher The watch service registered on this plugin's data folder
+     */
+    private static void watchConfig(WatchService watcher)
+    {
+        try
+        {
+            while (true)
+            {
+                WatchKey key = watcher.take();
+
+                // Editors often write a file in several steps; reload once per batch of events
+                boolean configChanged = false;
+                for (WatchEvent<?> event : key.pollEvents())
+                    if (event.context() instanceof Path changedFile && changedFile.toString().equals(CONFIG_FILE_NAME))
+                        configChanged = true;
+
+                if (configChanged)
+                    reloadConfig();
+                if (!key.reset())
+                    return;
+            }
+        }
+        catch (InterruptedException | ClosedWatchServiceException ex)
+        {
+            // The watcher was stopped
+        }
+    }
+
     /**
      * Shuts down the plugin, preventing it from operating on the proxy server.
      */
@@ -72,15 +189,246 @@ public class ConfigUtil
 
     /**
      * @param serverType A server type recognized by the Velocity proxy server's MCMG_NetworkHandler plugin
-     * @return The maximum number of servers of the specified type allowed on the network
+     * @return The maximum number of servers of the specified type allowed on the network; 0 if none is configured
      */
     public static int getMaxServerTypeCount(String serverType)
-    { return Integer.parseInt(config.getString(Route.fromString("max-server-type-instance-counts." + serverType))); }
+    { return snapshot.getMaxServerTypeCount(serverType); }
+
+    /**
+     * @return The lowest port that may be leased to a new server instance
+     */
+    public static int getMinInstancePort()
+    { return snapshot.getMinInstancePort(); }
+
+    /**
+     * @return The highest port that may be leased to a new server instance
+     */
+    public static int getMaxInstancePort()
+    { return snapshot.getMaxInstancePort(); }
+
+    /**
+     * @return The host address that the proxy connects to new server instances on
+     */
+    public static String getInstanceHost()
+    { return snapshot.getInstanceHost(); }
+
+    /**
+     * @return The number of milliseconds between each background refresh of active server information
+     */
+    public static int getServerPollInterval()
+    { return snapshot.getServerPollInterval(); }
+
+    /**
+     * @return The maximum age (in milliseconds) of cached active server information before a transfer decision forces
+     * a refresh
+     */
+    public static int getMaxServerInfoStaleness()
+    { return snapshot.getMaxServerInfoStaleness(); }
+
+    /**
+     * @return The number of milliseconds a seat reservation on a transfer target server is held before it expires
+     */
+    public static int getSeatReservationTime()
+    { return snapshot.getSeatReservationTime(); }
+
+    /**
+     * @return The number of seconds a lobby transfer request may wait for a new server instance to become transferable
+     * before the request fails
+     */
+    public static int getPendingTransferTimeout()
+    { return snapshot.getPendingTransferTimeout(); }
+
+    /**
+     * @return The number of seconds a new server instance is given to finish starting before it is considered stopped
+     */
+    public static int getServerStartupTimeout()
+    { return snapshot.getServerStartupTimeout(); }
+
+    /**
+     * @param serverType A server type recognized by the Velocity proxy server's MCMG_NetworkHandler plugin
+     * @return The minimum number of idle, READY instances of the specified server type to keep on standby
+     */
+    public static int getWarmStandbyCount(String serverType)
+    { return snapshot.getWarmStandbyCount(serverType); }
+
+    /**
+     * @return The server types that have a warm standby instance count configured
+     */
+    public static Set<String> getWarmStandbyServerTypes()
+    { return snapshot.getWarmStandbyCounts().keySet(); }
+
+    /**
+     * @return The mode in which server templates are cloned into new server instances ("copy", "link" or "archive")
+     */
+    public static String getTemplateCloneMode()
+    { return snapshot.getTemplateCloneMode(); }
+
+    /**
+     * @return The minimum number of seconds between checks of a server template for changes that require its archive
+     * to be rebuilt (only used by the "archive" template clone mode)
+     */
+    public static int getTemplateArchiveCheckInterval()
+    { return snapshot.getTemplateArchiveCheckInterval(); }
+
+    /**
+     * @return The number of seconds a server instance is given to stop gracefully before it is forcibly terminated
+     */
+    public static int getServerStopTimeout()
+    { return snapshot.getServerStopTimeout(); }
+
+    /**
+     * @return The number of consecutive crashes after which a server instance is no longer restarted
+     */
+    public static int getMaxServerRestarts()
+    { return snapshot.getMaxServerRestarts(); }
+
+    /**
+     * @return The number of seconds to wait before restarting a crashed server instance the first time; doubled for
+     * each further consecutive crash
+     */
+    public static int getServerRestartBackoff()
+    { return snapshot.getServerRestartBackoff(); }
+
+    /**
+     * @param serverType A server type recognized by the Velocity proxy server's MCMG_NetworkHandler plugin
+     * @return The maximum heap size (in megabytes) of instances of the specified server type
+     */
+    public static int getMaxHeap(String serverType)
+    { return snapshot.getJvmProfile(serverType).maxHeap(); }
+
+    /**
+     * @param serverType A server type recognized by the Velocity proxy server's MCMG_NetworkHandler plugin
+     * @return The initial heap size (in megabytes) of instances of the specified server type
+     */
+    public static int getMinHeap(String serverType)
+    { return snapshot.getJvmProfile(serverType).minHeap(); }
+
+    /**
+     * @param serverType A server type recognized by the Velocity proxy server's MCMG_NetworkHandler plugin
+     * @return The additional JVM flags (GC settings, etc.) that instances of the specified server type are launched with
+     */
+    public static List<String> getJvmFlags(String serverType)
+    { return snapshot.getJvmProfile(serverType).flags(); }
+
+    /**
+     * @param serverType A server type recognized by the Velocity proxy server's MCMG_NetworkHandler plugin
+     * @return The memory (in megabytes) an instance of the specified server type is expected to use beyond its maximum
+     * heap size
+     */
+    public static int getJvmOverhead(String serverType)
+    { return snapshot.getJvmProfile(serverType).overhead(); }
+
+    /**
+     * @return The total memory (in megabytes) that server instances started by this plugin may use on this host; 0 if
+     * unlimited
+     */
+    public static int getHostMemoryBudget()
+    { return snapshot.getHostMemoryBudget(); }
+
+    /**
+     * @return Whether server starts that would exceed the host memory budget are queued until memory is freed ("queue")
+     * or refused ("refuse")
+     */
+    public static String getMemoryBudgetPolicy()
+    { return snapshot.getMemoryBudgetPolicy(); }
+
+    /**
+     * @return The fraction of its maximum player count at or below which a server instance is considered under-used
+     */
+    public static double getScaleDownFillThreshold()
+    { return snapshot.getScaleDownFillThreshold(); }
+
+    /**
+     * @return The number of seconds a server instance must stay under-used before it is drained and stopped
+     */
+    public static int getScaleDownIdleTime()
+    { return snapshot.getScaleDownIdleTime(); }
+
+    /**
+     * @return The minimum number of seconds between scale-down actions (or after a new instance became READY) for each
+     * server type
+     */
+    public static int getScaleDownCooldown()
+    { return snapshot.getScaleDownCooldown(); }
+
+    /**
+     * @param serverType A server type recognized by the Velocity proxy server's MCMG_NetworkHandler plugin
+     * @return The minimum number of READY instances of the specified server type that scale-down always keeps
+     */
+    public static int getMinServerTypeCount(String serverType)
+    { return snapshot.getMinServerTypeCount(serverType); }
+
+    /**
+     * @return The number of seconds players on a DRAINING server instance are given to move before it is stopped
+     */
+    public static int getDrainTimeout()
+    { return snapshot.getDrainTimeout(); }
+
+    /**
+     * @return The number of most recent seconds of transfer requests and player counts used to forecast demand
+     */
+    public static int getDemandWindow()
+    { return snapshot.getDemandWindow(); }
+
+    /**
+     * @return The assumed number of seconds a new instance takes to start, used to forecast demand until an instance of
+     * the server type has actually started
+     */
+    public static int getDefaultStartupTime()
+    { return snapshot.getDefaultStartupTime(); }
+
+    /**
+     * @return The fraction of a server type's capacity that its forecasted demand may fill before a new instance is
+     * started ahead of time
+     */
+    public static double getScaleUpFillThreshold()
+    { return snapshot.getScaleUpFillThreshold(); }
+
+    /**
+     * @return The number of milliseconds that main_hub provisioning triggers are folded into a single evaluation for
+     */
+    public static int getMainHubDebounceWindow()
+    { return snapshot.getMainHubDebounceWindow(); }
+
+    /**
+     * @return The number of milliseconds after a server's latest heartbeat before it is pinged again instead
+     */
+    public static int getHeartbeatTimeout()
+    { return snapshot.getHeartbeatTimeout(); }
+
+    /**
+     * @return The number of milliseconds a server ping may take before it is treated as failed
+     */
+    public static int getPingTimeout()
+    { return snapshot.getPingTimeout(); }
+
+    /**
+     * @return The number of consecutive failed pings after which a server's circuit breaker opens
+     */
+    public static int getCircuitBreakerFailureThreshold()
+    { return snapshot.getCircuitBreakerFailureThreshold(); }
+
+    /**
+     * @return The number of milliseconds a server's circuit breaker first stays open for
+     */
+    public static int getCircuitBreakerOpenTime()
+    { return snapshot.getCircuitBreakerOpenTime(); }
+
+    /**
+     * @return The maximum number of milliseconds a server's circuit breaker stays open for, however often it re-opens
+     */
+    public static int getCircuitBreakerMaxOpenTime()
+    { return snapshot.getCircuitBreakerMaxOpenTime(); }
+
+    /**
+     * @return The number of threads that provision new servers; only read when the first server is started
+     */
+    public static int getProvisioningThreads()
+    { return snapshot.getProvisioningThreads(); }
 
     /**
-     * @param serverName The name of the server type instance to retrieve the port of
-     * @return The port number of the specified server type instance as a string
+     * @return The maximum number of new instances of a single server type that may be starting at once
      */
-    public static String getServerPort(String serverName)
-    { return config.getString(Route.fromString("server-port." + serverName)); }
+    public static int getMaxParallelStarts()
+    { return snapshot.getMaxParallelStarts(); }
 }
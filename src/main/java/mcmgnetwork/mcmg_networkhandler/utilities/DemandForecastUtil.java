@@ -0,0 +1,199 @@
+package mcmgnetwork.mcmg_networkhandler.utilities;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Description: <p>
+ *  A utility class holding static data and functions that track the recent demand for each server type (a sliding
+ *  window of lobby transfer requests and player counts) and forecast that demand over the time it takes a new instance
+ *  of the server type to start. This allows new instances to be started before the existing ones fill up, rather than
+ *  only once a transfer request finds no room.
+ *
+ *  <p>Author(s): Miles Bovero
+ *  <p>Date Created: 10/17/26
+ */
+public class DemandForecastUtil
+{
+
+    /**
+     * The number of most recent seconds of transfer requests used to detect sudden surges in demand
+     */
+    private static final int RECENT_REQUEST_SECONDS = 10;
+
+    /**
+     * The weight given to each newly observed startup time in a server type's average startup time
+     */
+    private static final double STARTUP_TIME_WEIGHT = 0.3;
+
+    /**
+     * A sample of the total number of players on (or reserved seats on) all instances of a server type
+     * @param sampleTime The system time (in milliseconds) at which the sample was taken
+     * @param playerCount The number of players
+     */
+    private record PlayerCountSample(long sampleTime, int playerCount) {}
+
+    /**
+     * The recent demand for a server type; access must be synchronized on the object itself
+     */
+    private static class DemandHistory
+    {
+        /**
+         * The system times (in milliseconds) of the transfer requests made within the window, oldest first
+         */
+        private final Deque<Long> requestTimes = new ArrayDeque<>();
+
+        /**
+         * The player count samples taken within the window, oldest first
+         */
+        private final Deque<PlayerCountSample> playerCountSamples = new ArrayDeque<>();
+
+        /**
+         * The system time (in milliseconds) at which demand of the server type was first tracked
+         */
+        private final long trackingStartTime = System.currentTimeMillis();
+
+        /**
+         * The average time (in milliseconds) new instances of the server type took to start; -1 if none have started yet
+         */
+        private double averageStartupTime = -1;
+    }
+
+    /**
+     * A map of server types and their recent demand
+     */
+    private static final ConcurrentHashMap<String, DemandHistory> demandHistories = new ConcurrentHashMap<>();
+
+    /**
+     * Records lobby transfer requests to the specified server type.
+     * @param serverType The server type that players requested to be transferred to
+     * @param playerCount The number of players requested to be transferred
+     */
+    public static void recordTransferRequests(String serverType, int playerCount)
+    {
+        DemandHistory history = getHistory(serverType);
+        synchronized (history)
+        {
+            long requestTime = System.currentTimeMillis();
+            for (int i=0; i<playerCount; i++)
+                history.requestTimes.addLast(requestTime);
+            discardExpired(history);
+        }
+    }
+
+    /**
+     * Records the current total number of players on (or with reserved seats on) all instances of the specified server
+     * type.
+     * @param serverType A server type recognized by the Velocity proxy server's MCMG_NetworkHandler plugin
+     * @param playerCount The current number of players
+     */
+    public static void recordPlayerCount(String serverType, int playerCount)
+    {
+        DemandHistory history = getHistory(serverType);
+        synchronized (history)
+        {
+            history.playerCountSamples.addLast(new PlayerCountSample(System.currentTimeMillis(), playerCount));
+            discardExpired(history);
+        }
+    }
+
+    /**
+     * Records how long a new instance of the specified server type took to start.
+     * @param serverType The server type of the instance
+     * @param startupTime The time (in milliseconds) between the instance's launch and it becoming READY
+     */
+    public static void recordStartupTime(String serverType, long startupTime)
+    {
+        DemandHistory history = getHistory(serverType);
+        synchronized (history)
+        {
+            history.averageStartupTime = history.averageStartupTime < 0 ? startupTime
+                    : STARTUP_TIME_WEIGHT * startupTime + (1 - STARTUP_TIME_WEIGHT) * history.averageStartupTime;
+        }
+    }
+
+    /**
+     * Forecasts the number of players of the specified server type once a new instance started now would be READY.
+     * <p>
+     * Growth is taken from the trend of the recorded player counts. Transfer requests lead player counts, so a surge
+     * in the most recent transfer requests (beyond the players that have been leaving the server type over the window)
+     * raises the forecast before it shows up in player counts.
+     * @param serverType A server type recognized by the Velocity proxy server's MCMG_NetworkHandler plugin
+     * @param currentPlayerCount The current number of players on (or with reserved seats on) the server type
+     * @return The forecasted number of players; never less than the current number of players
+     */
+    public static double forecastPlayerCount(String serverType, int currentPlayerCount)
+    {
+        DemandHistory history = demandHistories.get(serverType);
+        if (history == null)
+            return currentPlayerCount;
+
+        synchronized (history)
+        {
+            discardExpired(history);
+            long currentTime = System.currentTimeMillis();
+
+            // Measure the request rate over the window (or over as much of it as has been tracked)
+            long windowTime = Math.min(ConfigUtil.getDemandWindow() * 1000L, currentTime - history.trackingStartTime);
+            double requestRate = history.requestTimes.size() / (Math.max(windowTime, 1000L) / 1000.0);
+
+            // Measure the request rate over the most recent seconds only
+            long recentTime = currentTime - RECENT_REQUEST_SECONDS * 1000L;
+            int recentRequestCount = 0;
+            for (Iterator<Long> iterator = history.requestTimes.descendingIterator(); iterator.hasNext() && iterator.next() >= recentTime;)
+                recentRequestCount++;
+            double recentRequestRate = (double) recentRequestCount / RECENT_REQUEST_SECONDS;
+
+            // Measure the net player growth rate over the window
+            double playerGrowthRate = 0;
+            if (history.playerCountSamples.size() > 1)
+            {
+                PlayerCountSample first = history.playerCountSamples.getFirst();
+                PlayerCountSample last = history.playerCountSamples.getLast();
+                long sampleTime = last.sampleTime() - first.sampleTime();
+                if (sampleTime > 0)
+                    playerGrowthRate = (last.playerCount() - first.playerCount()) / (sampleTime / 1000.0);
+            }
+
+            // Players that requested transfers over the window but did not add to the player count have since left
+            double departureRate = Math.max(0, requestRate - playerGrowthRate);
+            double netGrowthRate = Math.max(playerGrowthRate, recentRequestRate - departureRate);
+
+            // Forecast over the time a new instance takes to start
+            double startupSeconds = (history.averageStartupTime < 0 ? ConfigUtil.getDefaultStartupTime() * 1000.0
+                    : history.averageStartupTime) / 1000.0;
+            return currentPlayerCount + Math.max(0, netGrowthRate) * startupSeconds;
+        }
+    }
+
+    /**
+     * @return The server types whose demand is being tracked
+     */
+    public static Set<String> getServerTypes()
+    { return demandHistories.keySet(); }
+
+    /**
+     * @param serverType A server type recognized by the Velocity proxy server's MCMG_NetworkHandler plugin
+     * @return The recent demand of the specified server type, created if it did not exist
+     */
+    private static DemandHistory getHistory(String serverType)
+    { return demandHistories.computeIfAbsent(serverType, type -> new DemandHistory()); }
+
+    /**
+     * Discards the transfer requests and player count samples of the provided demand history that fall outside of the
+     * window; the caller must hold the history's lock.
+     * @param history The demand history to trim
+     */
+    private static void discardExpired(DemandHistory history)
+    {
+        long expirationTime = System.currentTimeMillis() - ConfigUtil.getDemandWindow() * 1000L;
+
+        while (!history.requestTimes.isEmpty() && history.requestTimes.getFirst() < expirationTime)
+            history.requestTimes.removeFirst();
+        while (!history.playerCountSamples.isEmpty() && history.playerCountSamples.getFirst().sampleTime() < expirationTime)
+            history.playerCountSamples.removeFirst();
+    }
+}
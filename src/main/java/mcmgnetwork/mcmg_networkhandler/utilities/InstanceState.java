@@ -0,0 +1,67 @@
+package mcmgnetwork.mcmg_networkhandler.utilities;
+
+import lombok.Getter;
+
+/**
+ * Description: <p>
+ *  The lifecycle states of a server instance started by the MCMG_NetworkHandler plugin. Backend servers also report
+ *  their own state in heartbeats as the varint-encoded id of one of these states.
+ *
+ *  <p>Author(s): Miles Bovero
+ *  <p>Date Created: 10/17/26
+ */
+public enum InstanceState
+{
+    /**
+     * The instance's process has been launched, but the server is not yet able to accept players
+     */
+    STARTING(0),
+
+    /**
+     * The instance has finished starting and is able to be transferred to
+     */
+    READY(1),
+
+    /**
+     * The instance is being emptied in preparation for shutdown and must not receive new transfers
+     */
+    DRAINING(2),
+
+    /**
+     * The instance is no longer running
+     */
+    STOPPED(3);
+
+    /**
+     * The states indexed by their ids
+     */
+    private static final InstanceState[] statesById = new InstanceState[values().length];
+
+    static
+    {
+        for (InstanceState state : values())
+            statesById[state.id] = state;
+    }
+
+    /**
+     * The id this state is sent over the network as
+     */
+    @Getter
+    private final int id;
+
+    InstanceState(int id)
+    { this.id = id; }
+
+    /**
+     * @param id The id of a state, as read from a plugin message
+     * @return The state with the provided id
+     * @throws IllegalArgumentException Indicates the id does not belong to any state
+     */
+    public static InstanceState fromId(int id)
+    {
+        if (id < 0 || id >= statesById.length)
+            throw new IllegalArgumentException("Unknown instance state id: " + id);
+
+        return statesById[id];
+    }
+}
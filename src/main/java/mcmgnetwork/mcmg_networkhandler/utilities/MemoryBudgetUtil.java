@@ -0,0 +1,139 @@
+package mcmgnetwork.mcmg_networkhandler.utilities;
+
+import mcmgnetwork.mcmg_networkhandler.MCMG_NetworkHandler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Description: <p>
+ *  A utility class holding static data and functions that keep server instances started by this plugin within the
+ *  host's memory budget. Each instance reserves its expected memory use (its maximum heap plus JVM overhead) before it
+ *  is started, and releases it once it stops. Starts that would exceed the budget are either queued until enough
+ *  memory is released or refused, according to the configured memory budget policy.
+ *
+ *  <p>Author(s): Miles Bovero
+ *  <p>Date Created: 10/17/26
+ */
+public class MemoryBudgetUtil
+{
+
+    /**
+     * The memory budget policy under which starts that exceed the budget wait until memory is released
+     */
+    public static final String QUEUE_POLICY = "queue";
+
+    /**
+     * The memory budget policy under which starts that exceed the budget are refused
+     */
+    public static final String REFUSE_POLICY = "refuse";
+
+    /**
+     * A map of the names of instances holding memory reservations and their reserved memory (in megabytes)
+     */
+    private static final Map<String, Integer> reservations = new HashMap<>();
+
+    /**
+     * The server types with a start waiting on memory to be released, in the order they were queued
+     */
+    private static final Set<String> queuedStarts = new LinkedHashSet<>();
+
+    /**
+     * The total memory (in megabytes) currently reserved
+     */
+    private static int reservedMemory = 0;
+
+    /**
+     * Runs queued starts once memory is released, off of the releasing thread
+     */
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(runnable ->
+    {
+        Thread thread = new Thread(runnable, "MCMG-memory-budget");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param serverType A server type recognized by the Velocity proxy server's MCMG_NetworkHandler plugin
+     * @return The memory (in megabytes) an instance of the specified server type is expected to use
+     */
+    public static int getInstanceMemory(String serverType)
+    { return ConfigUtil.getMaxHeap(serverType) + ConfigUtil.getJvmOverhead(serverType); }
+
+    /**
+     * Attempts to reserve memory for a new instance of the specified server type.
+     * @param serverType The server type of the new instance
+     * @param serverName The name of the new instance
+     * @return Whether or not the memory was reserved; false if the reservation would exceed the host memory budget
+     */
+    public static synchronized boolean tryReserve(String serverType, String serverName)
+    {
+        int budget = ConfigUtil.getHostMemoryBudget();
+        int instanceMemory = getInstanceMemory(serverType);
+
+        if (budget > 0 && reservedMemory + instanceMemory > budget)
+            return false;
+
+        Integer previousReservation = reservations.put(serverName, instanceMemory);
+        reservedMemory += instanceMemory - (previousReservation == null ? 0 : previousReservation);
+        return true;
+    }
+
+    /**
+     * Releases the memory reserved for an instance that has stopped (or never started), and retries any queued starts.
+     * @param serverName The name of the instance
+     */
+    public static void release(String serverName)
+    {
+        List<String> startsToRetry;
+        synchronized (MemoryBudgetUtil.class)
+        {
+            Integer reservation = reservations.remove(serverName);
+            if (reservation == null)
+                return;
+
+            reservedMemory -= reservation;
+
+            startsToRetry = new ArrayList<>(queuedStarts);
+            queuedStarts.clear();
+        }
+
+        // Retry queued starts in the order they were queued; any that still do not fit are queued again
+        if (!startsToRetry.isEmpty())
+            executor.execute(() ->
+            {
+                for (String serverType : startsToRetry)
+                    ServerInitializeUtil.startNewServer(serverType);
+            });
+    }
+
+    /**
+     * Queues a start of the specified server type to be retried once memory is released.
+     * @param serverType The server type that could not be started
+     */
+    public static synchronized void queueStart(String serverType)
+    {
+        if (queuedStarts.add(serverType))
+            MCMG_NetworkHandler.getLogger().warn("Starting a new {} server would exceed the host memory budget ({} of {} MB reserved); the start is queued.",
+                    serverType, reservedMemory, ConfigUtil.getHostMemoryBudget());
+    }
+
+    /**
+     * @param serverType A server type recognized by the Velocity proxy server's MCMG_NetworkHandler plugin
+     * @return Whether or not a start of the specified server type is waiting on memory to be released
+     */
+    public static synchronized boolean isStartQueued(String serverType)
+    { return queuedStarts.contains(serverType); }
+
+    /**
+     * Stops the retry thread, discarding any queued retries so that no further servers are started.
+     */
+    public static void shutdown()
+    { executor.shutdownNow(); }
+}
@@ -0,0 +1,108 @@
+package mcmgnetwork.mcmg_networkhandler.utilities;
+
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import mcmgnetwork.mcmg_networkhandler.MCMG_NetworkHandler;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Description: <p>
+ *  A utility class holding static data and functions that lease ports to new server instances. Ports are handed out
+ *  from the configured port range, skipping ports that are already leased, ports of servers registered with the proxy,
+ *  and ports that cannot actually be bound on this host. Each instance keeps its lease until it stops, so that no port
+ *  needs to be configured ahead of time for every possible instance name.
+ *
+ *  <p>Author(s): Miles Bovero
+ *  <p>Date Created: 10/17/26
+ */
+public class PortAllocatorUtil
+{
+
+    /**
+     * A map of the names of server instances and the ports leased to them; access must be synchronized on the class
+     */
+    private static final Map<String, Integer> leases = new HashMap<>();
+
+    /**
+     * The currently leased ports; access must be synchronized on the class
+     */
+    private static final Set<Integer> leasedPorts = new HashSet<>();
+
+    /**
+     * The port the next search for a free port begins at, so that recently released ports are not immediately reused
+     */
+    private static int nextPort = -1;
+
+    /**
+     * Leases a free port from the configured port range to the specified server instance. If the instance already holds
+     * a lease, its leased port is returned instead.
+     * @param serverName The name of the instance to lease a port to
+     * @return The leased port
+     * @throws IOException Indicates there are no free ports left in the configured port range
+     */
+    public static synchronized int leasePort(String serverName) throws IOException
+    {
+        Integer leasedPort = leases.get(serverName);
+        if (leasedPort != null)
+            return leasedPort;
+
+        int minPort = ConfigUtil.getMinInstancePort();
+        int maxPort = ConfigUtil.getMaxInstancePort();
+        int rangeSize = maxPort - minPort + 1;
+        if (nextPort < minPort || nextPort > maxPort)
+            nextPort = minPort;
+
+        // Ports of servers registered with the proxy (e.g. statically configured servers) are never handed out
+        Set<Integer> registeredPorts = new HashSet<>();
+        for (RegisteredServer server : MCMG_NetworkHandler.getProxy().getAllServers())
+            registeredPorts.add(server.getServerInfo().getAddress().getPort());
+
+        // Search the whole range once, beginning after the most recently leased port
+        for (int i=0; i<rangeSize; i++)
+        {
+            int port = minPort + (nextPort - minPort + i) % rangeSize;
+            if (leasedPorts.contains(port) || registeredPorts.contains(port) || !isBindable(port))
+                continue;
+
+            leases.put(serverName, port);
+            leasedPorts.add(port);
+            nextPort = port + 1;
+            return port;
+        }
+
+        throw new IOException("No free ports are left in the range " + minPort + "-" + maxPort + " for " + serverName);
+    }
+
+    /**
+     * Releases the port leased to the specified server instance, if any, allowing it to be leased again.
+     * @param serverName The name of the instance that no longer needs its port
+     */
+    public static synchronized void releasePort(String serverName)
+    {
+        Integer port = leases.remove(serverName);
+        if (port != null)
+            leasedPorts.remove(port);
+    }
+
+    /**
+     * @param port A port number
+     * @return Whether or not the port can currently be bound on this host (i.e. nothing else is listening on it)
+     */
+    private static boolean isBindable(int port)
+    {
+        try (ServerSocket socket = new ServerSocket())
+        {
+            socket.setReuseAddress(false);
+            socket.bind(new InetSocketAddress(port));
+            return true;
+        }
+        catch (IOException ex)
+        { return false; }
+    }
+}
@@ -0,0 +1,86 @@
+package mcmgnetwork.mcmg_networkhandler.utilities;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Description: <p>
+ *  A utility class holding static data and functions that track short-lived seat reservations on network servers.
+ *  A seat is reserved as soon as a server is handed out as a transfer target, and is counted against that server's
+ *  capacity until a player actually connects to the server (or the reservation expires). Pings and heartbeats never
+ *  release seats, since a player only arrives some time after their target was handed out. This prevents
+ *  bursts of transfer requests from all choosing the same server and pushing it past its maximum player count.
+ *
+ *  <p>Author(s): Miles Bovero
+ *  <p>Date Created: 10/17/26
+ */
+public class SeatReservationUtil
+{
+
+    /**
+     * A map of server names and the creation times (in milliseconds) of each of that server's seat reservations
+     */
+    private static final ConcurrentHashMap<String, Queue<Long>> reservations = new ConcurrentHashMap<>();
+
+    /**
+     * Reserves seats for players being transferred to the specified server.
+     * @param serverName The name of the server to reserve seats on
+     * @param seatCount The number of seats to reserve
+     */
+    public static void reserveSeats(String serverName, int seatCount)
+    {
+        Queue<Long> serverReservations = reservations.computeIfAbsent(serverName, name -> new ConcurrentLinkedQueue<>());
+        long reservationTime = System.currentTimeMillis();
+        for (int i=0; i<seatCount; i++)
+            serverReservations.add(reservationTime);
+    }
+
+    /**
+     * @param serverName The name of the server to count seat reservations of
+     * @return The number of unexpired seat reservations on the specified server whose players have not yet connected
+     */
+    public static int getReservedSeatCount(String serverName)
+    {
+        Queue<Long> serverReservations = reservations.get(serverName);
+        if (serverReservations == null)
+            return 0;
+
+        // Discard any reservations that have expired
+        long expirationTime = System.currentTimeMillis() - ConfigUtil.getSeatReservationTime();
+        serverReservations.removeIf(reservationTime -> reservationTime < expirationTime);
+
+        return serverReservations.size();
+    }
+
+    /**
+     * Discards the specified number of the specified server's oldest seat reservations; used when that many players
+     * have connected to the server.
+     * @param serverName The name of the server that players joined
+     * @param seatCount The number of players that joined
+     */
+    public static void confirmSeats(String serverName, int seatCount)
+    {
+        Queue<Long> serverReservations = reservations.get(serverName);
+        if (serverReservations == null)
+            return;
+
+        for (int i=0; i<seatCount && serverReservations.poll() != null; i++);
+    }
+
+    /**
+     * Discards the specified number of the specified server's seat reservations; used when seats were reserved for
+     * players that will not be transferred after all.
+     * @param serverName The name of the server the seats were reserved on
+     * @param seatCount The number of seats to release
+     */
+    public static void releaseSeats(String serverName, int seatCount)
+    { confirmSeats(serverName, seatCount); }
+
+    /**
+     * Discards all of the specified server's seat reservations; used when a server is no longer active.
+     * @param serverName The name of the server to discard the seat reservations of
+     */
+    public static void clearReservations(String serverName)
+    { reservations.remove(serverName); }
+}
@@ -3,56 +3,115 @@ package mcmgnetwork.mcmg_networkhandler.utilities;
 import com.velocitypowered.api.proxy.server.ServerPing;
 import lombok.Getter;
 
-import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Description: <p>
- *  A wrapper class for a ServerPing object instance and a correlating server name. Provides easy and compact access
- *  to a server's name and player count information.
+ *  The live state of a single active server: its name, its parsed ServerKey (server type and instance number), and its
+ *  player counts and TPS. One ServerInfoPackage is created when a server becomes active and is then updated in place by every
+ *  ping or heartbeat of that server, so routine updates neither allocate a new package nor copy the active server
+ *  snapshot, and the (comparatively large) ServerPing objects the player counts are read from are not retained. The
+ *  update itself allocates nothing, though a ping still allocates its futures and callbacks.
  *
  *  <p>Author(s): Miles Bovero
  *  <p>Date Created: 5/7/24
  */
-@Getter
 public class ServerInfoPackage
 {
     /**
-     * The ServerPing object that this ServerInfoPackage is backed by
+     * The name of the server that this ServerInfoPackage was constructed from
      */
-    private final ServerPing serverPing;
+    @Getter
+    private final String serverName;
 
     /**
-     * The name of the server that this ServerInfoPackage was constructed from
+     * The server type and instance number of the server that this ServerInfoPackage was constructed from
      */
-    private final String serverName;
+    @Getter
+    private final ServerKey key;
 
     /**
-     * The number of players online the server that this ServerInfoPackage was constructed from
+     * The server's online player count (high 32 bits) and maximum player count (low 32 bits), packed so that both are
+     * always read and replaced together
      */
-    private int onlinePlayerCount;
+    private final AtomicLong playerCounts = new AtomicLong();
 
     /**
-     * The maximum number of players that can be online the server that this ServerInfoPackage was constructed from
+     * The ticks per second (in hundredths) reported by the server's latest heartbeat; -1 if unknown (e.g. the server
+     * was last pinged)
      */
-    private int maximumPlayerCount;
+    private volatile int tpsHundredths = -1;
 
     /**
-     * Creates a new ServerInfoPackage instance based off of the provided ServerPing correlating to the provided
-     * server name.
-     * @param serverPing The ServerPing result obtained by pinging a RegisteredServer
-     * @param serverName The name of the server that was pinged
+     * Creates a new ServerInfoPackage for the server with the provided name, with no players online until its first
+     * update.
+     * @param serverName The name of the server
      */
-    public ServerInfoPackage(ServerPing serverPing, String serverName)
+    public ServerInfoPackage(String serverName)
     {
-        this.serverPing = serverPing;
         this.serverName = serverName;
+        key = ServerKey.parse(serverName);
+    }
+
+    /**
+     * @return The server type of the server that this ServerInfoPackage was constructed from (its name without the
+     * trailing instance number)
+     */
+    public String getServerType()
+    { return key.serverType(); }
+
+    /**
+     * @return The instance number that the name of the server that this ServerInfoPackage was constructed from ends
+     * in; -1 if its name does not end in a number
+     */
+    public int getInstanceNumber()
+    { return key.instanceNumber(); }
+
+    /**
+     * Updates the server's player counts from a ping of the server; the ServerPing itself is not retained.
+     * @param serverPing The ServerPing result obtained by pinging the server
+     */
+    public void update(ServerPing serverPing)
+    {
+        ServerPing.Players players = serverPing.getPlayers().orElse(null);
+        if (players == null)
+            update(0, 0, -1);
+        else
+            update(players.getOnline(), players.getMax(), -1);
+    }
+
+    /**
+     * Updates the server's player counts and TPS (e.g. from a heartbeat sent by the server).
+     * @param onlinePlayerCount The number of players online the server
+     * @param maximumPlayerCount The maximum number of players that can be online the server
+     * @param tps The ticks per second of the server; -1 if unknown
+     */
+    public void update(int onlinePlayerCount, int maximumPlayerCount, double tps)
+    {
+        tpsHundredths = tps < 0 ? -1 : (int) Math.round(tps * 100);
+        playerCounts.set(((long) onlinePlayerCount << 32) | (maximumPlayerCount & 0xFFFFFFFFL));
+    }
 
-        // Initialize player-related fields
-        Optional<ServerPing.Players> serverPlayers = serverPing.getPlayers();
-        serverPlayers.ifPresent(players ->
-        {
-            onlinePlayerCount = players.getOnline();
-            maximumPlayerCount = players.getMax();
-        });
+    /**
+     * @return The number of players online the server that this ServerInfoPackage was constructed from
+     */
+    public int getOnlinePlayerCount()
+    { return (int) (playerCounts.get() >>> 32); }
+
+    /**
+     * @return The maximum number of players that can be online the server that this ServerInfoPackage was constructed
+     * from
+     */
+    public int getMaximumPlayerCount()
+    { return (int) playerCounts.get(); }
+
+    /**
+     * @return The ticks per second reported by the server's latest heartbeat; -1 if unknown (e.g. the server was
+     * last pinged)
+     */
+    public double getTps()
+    {
+        int tps = tpsHundredths;
+        return tps < 0 ? -1 : tps / 100.0;
     }
 }
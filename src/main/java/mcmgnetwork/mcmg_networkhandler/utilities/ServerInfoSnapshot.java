@@ -0,0 +1,161 @@
+package mcmgnetwork.mcmg_networkhandler.utilities;
+
+import lombok.Getter;
+
+import java.util.*;
+
+/**
+ * Description: <p>
+ *  An immutable snapshot of which network servers are active. Snapshots are never modified after they are created;
+ *  servers becoming active or inactive instead produce a new snapshot, so that any number of threads can read a
+ *  snapshot without locking and without ever seeing a partially updated state.
+ *  <p>
+ *  Each active server's ServerInfoPackage holds its live player counts, which are updated in place by pings and
+ *  heartbeats, so that a server's routine updates never copy the snapshot. Servers are additionally indexed by their
+ *  exact server type, along with a bitset of each type's occupied instance numbers, so that target selection only
+ *  ever scans the servers of one type and finding free or highest instance numbers are bit operations.
+ *
+ *  <p>Author(s): Miles Bovero
+ *  <p>Date Created: 10/17/26
+ */
+public class ServerInfoSnapshot
+{
+    /**
+     * A snapshot containing no active servers
+     */
+    public static final ServerInfoSnapshot EMPTY = new ServerInfoSnapshot(Map.of(), Map.of(), Map.of());
+
+    /**
+     * The instance numbers of a server type without active servers; never modified
+     */
+    private static final BitSet EMPTY_INSTANCE_NUMBERS = new BitSet();
+
+    /**
+     * An unmodifiable map of the names of active servers and the ServerInfoPackage corresponding to that server
+     */
+    @Getter
+    private final Map<String, ServerInfoPackage> serverInfo;
+
+    /**
+     * An unmodifiable map of server types and that type's active servers
+     */
+    private final Map<String, List<ServerInfoPackage>> serversByType;
+
+    /**
+     * An unmodifiable map of server types and the instance numbers of that type's active servers; the bitsets are never
+     * modified once the snapshot is created
+     */
+    private final Map<String, BitSet> instanceNumbersByType;
+
+    /**
+     * Creates a new ServerInfoSnapshot backed by the provided maps.
+     * @param serverInfo An unmodifiable map of active server names and their ServerInfoPackages
+     * @param serversByType An unmodifiable map of server types and their active servers
+     * @param instanceNumbersByType An unmodifiable map of server types and their active instance numbers
+     */
+    private ServerInfoSnapshot(Map<String, ServerInfoPackage> serverInfo,
+                               Map<String, List<ServerInfoPackage>> serversByType,
+                               Map<String, BitSet> instanceNumbersByType)
+    {
+        this.serverInfo = serverInfo;
+        this.serversByType = serversByType;
+        this.instanceNumbersByType = instanceNumbersByType;
+    }
+
+    /**
+     * @param serverName The name of the server to retrieve information on
+     * @return The ServerInfoPackage of the specified server, or null if the server is not active
+     */
+    public ServerInfoPackage get(String serverName)
+    { return serverInfo.get(serverName); }
+
+    /**
+     * @param serverType A server type recognized by the Velocity proxy server's MCMG_NetworkHandler plugin
+     * @return The active servers of exactly the specified type, in no particular order
+     */
+    public List<ServerInfoPackage> getServers(String serverType)
+    { return serversByType.getOrDefault(serverType, List.of()); }
+
+    /**
+     * @param serverType A server type recognized by the Velocity proxy server's MCMG_NetworkHandler plugin
+     * @return A copy of the set of instance numbers of the active servers of exactly the specified type (servers whose
+     * names do not end in a number are not included)
+     */
+    public BitSet getInstanceNumbers(String serverType)
+    { return (BitSet) instanceNumbersByType.getOrDefault(serverType, EMPTY_INSTANCE_NUMBERS).clone(); }
+
+    /**
+     * @param serverInfoPackage The information of a server that has become active
+     * @return A new snapshot equal to this one, except with the provided server's information added/replaced
+     */
+    public ServerInfoSnapshot with(ServerInfoPackage serverInfoPackage)
+    {
+        String serverName = serverInfoPackage.getServerName();
+        String serverType = serverInfoPackage.getServerType();
+        ServerInfoPackage previousInfo = serverInfo.get(serverName);
+
+        // Copy the server information map, replacing the server's previous information
+        Map<String, ServerInfoPackage> updatedServerInfo = new HashMap<>(serverInfo);
+        updatedServerInfo.put(serverName, serverInfoPackage);
+
+        // Only the indexes of the server's own type need to be rebuilt
+        List<ServerInfoPackage> servers = new ArrayList<>(getServers(serverType));
+        if (previousInfo != null)
+            servers.remove(previousInfo);
+        servers.add(serverInfoPackage);
+
+        BitSet instanceNumbers = getInstanceNumbers(serverType);
+        if (serverInfoPackage.getInstanceNumber() >= 0)
+            instanceNumbers.set(serverInfoPackage.getInstanceNumber());
+
+        return new ServerInfoSnapshot(Map.copyOf(updatedServerInfo),
+                withEntry(serversByType, serverType, List.copyOf(servers)),
+                withEntry(instanceNumbersByType, serverType, instanceNumbers));
+    }
+
+    /**
+     * @param serverName The name of a server that is no longer active
+     * @return A new snapshot equal to this one, except without the specified server; or this snapshot if the server
+     * was not present
+     */
+    public ServerInfoSnapshot without(String serverName)
+    {
+        ServerInfoPackage previousInfo = serverInfo.get(serverName);
+        if (previousInfo == null)
+            return this;
+
+        String serverType = previousInfo.getServerType();
+
+        // Copy the server information map, removing the server
+        Map<String, ServerInfoPackage> updatedServerInfo = new HashMap<>(serverInfo);
+        updatedServerInfo.remove(serverName);
+
+        // Only the indexes of the server's own type need to be rebuilt
+        List<ServerInfoPackage> servers = new ArrayList<>(getServers(serverType));
+        servers.remove(previousInfo);
+
+        BitSet instanceNumbers = getInstanceNumbers(serverType);
+        if (previousInfo.getInstanceNumber() >= 0)
+            instanceNumbers.clear(previousInfo.getInstanceNumber());
+
+        return new ServerInfoSnapshot(Map.copyOf(updatedServerInfo),
+                withEntry(serversByType, serverType, servers.isEmpty() ? null : List.copyOf(servers)),
+                withEntry(instanceNumbersByType, serverType, servers.isEmpty() ? null : instanceNumbers));
+    }
+
+    /**
+     * @param map An unmodifiable map to copy
+     * @param key The key whose value will be replaced in the copy
+     * @param value The new value of the key; or null to remove the key from the copy
+     * @return An unmodifiable copy of the provided map with the specified entry replaced or removed
+     */
+    private static <V> Map<String, V> withEntry(Map<String, V> map, String key, V value)
+    {
+        Map<String, V> updatedMap = new HashMap<>(map);
+        if (value == null)
+            updatedMap.remove(key);
+        else
+            updatedMap.put(key, value);
+        return Map.copyOf(updatedMap);
+    }
+}
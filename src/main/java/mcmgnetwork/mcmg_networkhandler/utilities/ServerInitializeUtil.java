@@ -5,18 +5,23 @@ import mcmgnetwork.mcmg_networkhandler.protocols.ServerStatuses;
 
 import java.io.*;
 import java.nio.file.*;
-import java.nio.file.attribute.BasicFileAttributes;
-import java.util.HashSet;
+import java.util.BitSet;
 import java.util.Properties;
-import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Description: <p>
  *  A utility class holding static data and functions that handle specific actions and information regarding the
  *  creation/initialization of new network servers.
+ *  <p>
+ *  A new server's slot is allocated on the caller's thread. The slow work runs as separate stages on a dedicated,
+ *  bounded pool of provisioning threads: cloning its template, patching its config, and launching its process. The
+ *  caller's thread (e.g. a ping future's callback) is therefore never blocked on disk I/O, and several instances can
+ *  be provisioned at once. The final stage awaits the launched instance becoming READY (see
+ *  startNewServerAndAwaitReady); its startup timeout only begins once its process has launched.
  *
  *  <p>Author(s): Miles Bovero
  *  <p>Date Created: 5/11/24
@@ -25,60 +30,123 @@ public class ServerInitializeUtil
 {
 
     /**
-     * Determines whether or not new server instances' consoles will stay open after termination; helpful for
-     * troubleshooting
+     * The object locked while claiming a new server instance's name; prevents two requests from claiming the same
+     * instance name or starting duplicate instances of the same server type
      */
-    private static final boolean keepConsoleOpen = false;
+    private static final Object startLock = new Object();
 
     /**
-     * A set of names of server types that are actively being initialized; used to prevent initialization overlap/spam
+     * Runs the stages of new servers' provisioning; its size is read from the config when the first server is started
      */
-    private static final Set<String> initializingServers = new HashSet<>();
+    private static final ExecutorService executor = Executors.newFixedThreadPool(ConfigUtil.getProvisioningThreads(), runnable ->
+    {
+        Thread thread = new Thread(runnable, "MCMG-provisioning");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * A single provisioning stage of a new server
+     */
+    private interface ProvisioningStage
+    {
+        void run() throws IOException;
+    }
 
     /**
-     * Handles the tracking of initializing servers and the time allotted for new server initialization
+     * Attempts to create and initialize a new server of the specified type. Its slot is allocated immediately, and the
+     * server is then provisioned in the background.
+     * @param serverType A server type (recognized by the Velocity proxy server's MCMG_NetworkHandler plugin) of which a
+     *                   new instance will be started
+     * @return A CompletableFuture that completes with the server status of the server type instance that was requested
+     * to start: BEGAN_INITIALIZATION once the new server's process has launched, or FAILED_INITIALIZATION if it could
+     * not be provisioned. It completes immediately if no new server is started (e.g. INITIALIZING or FULL).
      */
-    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    public static CompletableFuture<ServerStatuses> startNewServer(String serverType)
+    { return startNewServer(serverType, false); }
 
     /**
-     * The number of seconds given for a server to initialize; any duplicate server creation requests are ignored
-     * during this time
+     * Attempts to create and initialize a new server of the specified type the same way as startNewServer(serverType),
+     * but also awaits the new server becoming READY.
+     * @param serverType A server type (recognized by the Velocity proxy server's MCMG_NetworkHandler plugin) of which a
+     *                   new instance will be started
+     * @return A CompletableFuture that completes with TRANSFERABLE once the new server is READY, or with
+     * FAILED_INITIALIZATION if it could not be provisioned or stopped (or timed out) before becoming READY. It completes
+     * immediately if no new server is started (e.g. INITIALIZING or FULL).
      */
-    private static final int initializationTime = 10;
+    public static CompletableFuture<ServerStatuses> startNewServerAndAwaitReady(String serverType)
+    { return startNewServer(serverType, true); }
 
+    /**
+     * Stops the provisioning threads, interrupting any provisioning in progress so that no further servers are
+     * launched.
+     */
+    public static void shutdown()
+    { executor.shutdownNow(); }
 
     /**
-     * Attempts to create and initialize a new server of the specified type.
      * @param serverType A server type (recognized by the Velocity proxy server's MCMG_NetworkHandler plugin) of which a
      *                   new instance will be started
-     * @return The server status of the server type instance that was requested to start
+     * @param awaitReady Whether or not the returned future waits for the new server to become READY
+     * @return A CompletableFuture that completes with the server status of the server type instance that was requested
+     * to start
      */
-    public static String startNewServer(String serverType)
+    private static CompletableFuture<ServerStatuses> startNewServer(String serverType, boolean awaitReady)
     {
-        // If the requested server type already has a new server being initialized, return status early
-        if (initializingServers.contains(serverType))
-            return ServerStatuses.INITIALIZING;
-
-        // Attempt to retrieve a new server instance's name
-        String newServerName = getNewServerName(serverType);
-        // If there is no room for a new server of the specified type, return early
-        if (newServerName.isEmpty())
+        String newServerName;
+        synchronized (startLock)
         {
-            MCMG_NetworkHandler.getLogger().warn("A new {} server could not be started because all its server instance slots are full!", serverType);
-            return ServerStatuses.FULL;
-        }
+            // If the requested server type already has as many new servers being initialized as may be provisioned
+            // in parallel (or one waiting on memory), return status early
+            if (ServerLifecycleUtil.countInstances(serverType, InstanceState.STARTING) >= ConfigUtil.getMaxParallelStarts()
+                    || MemoryBudgetUtil.isStartQueued(serverType))
+                return CompletableFuture.completedFuture(ServerStatuses.INITIALIZING);
+
+            // Attempt to retrieve a new server instance's name
+            newServerName = getNewServerName(serverType);
+            // If there is no room for a new server of the specified type, return early
+            if (newServerName.isEmpty())
+            {
+                MCMG_NetworkHandler.getLogger().warn("A new {} server could not be started because all its server instance slots are full!", serverType);
+                return CompletableFuture.completedFuture(ServerStatuses.FULL);
+            }
+
+            // Ensure the new server fits within the host memory budget
+            if (!MemoryBudgetUtil.tryReserve(serverType, newServerName))
+            {
+                if (ConfigUtil.getMemoryBudgetPolicy().equals(MemoryBudgetUtil.REFUSE_POLICY))
+                {
+                    MCMG_NetworkHandler.getLogger().warn("A new {} server could not be started because it would exceed the host memory budget!", serverType);
+                    return CompletableFuture.completedFuture(ServerStatuses.FULL);
+                }
+
+                // Retry the start once memory is released
+                MemoryBudgetUtil.queueStart(serverType);
+                return CompletableFuture.completedFuture(ServerStatuses.INITIALIZING);
+            }
 
-        // Otherwise, beginning new server initialization; track it to prevent duplicate start requests
-        initializingServers.add(serverType);
-        executor.schedule(() -> initializingServers.remove(serverType), initializationTime, TimeUnit.SECONDS);
+            // Otherwise, beginning new server initialization; track it to prevent duplicate start requests
+            ServerLifecycleUtil.markStarting(serverType, newServerName);
+        }
 
         // Attempt to initialize a new server
-        boolean successfulStart = initializeNewServer(serverType, newServerName);
+        CompletableFuture<ServerStatuses> launchFuture = initializeNewServer(serverType, newServerName).thenApply(successfulStart ->
+        {
+            if (successfulStart)
+                return ServerStatuses.BEGAN_INITIALIZATION;
 
-        if (successfulStart)
-            return ServerStatuses.BEGAN_INITIALIZATION;
-        else
+            // The instance never launched; free its name and memory for a later attempt
+            ServerLifecycleUtil.markStopped(newServerName);
+            MemoryBudgetUtil.release(newServerName);
             return ServerStatuses.FAILED_INITIALIZATION;
+        });
+        if (!awaitReady)
+            return launchFuture;
+
+        // Await the launched instance becoming READY
+        return launchFuture.thenCompose(serverStatus -> serverStatus != ServerStatuses.BEGAN_INITIALIZATION
+                ? CompletableFuture.completedFuture(serverStatus)
+                : ServerLifecycleUtil.awaitReady(newServerName).thenApply(ready -> ready ? ServerStatuses.TRANSFERABLE : ServerStatuses.FAILED_INITIALIZATION));
     }
 
     /**
@@ -91,18 +159,16 @@ public class ServerInitializeUtil
      */
     private static String getNewServerName(String serverType)
     {
-        // Find and store names of all active servers of the provided type
-        Set<String> activeServerNames = new HashSet<>();
-        for (String serverName : ActiveServerUtil.getActiveServerInfo().keySet())
-            if (serverName.contains(serverType))
-                activeServerNames.add(serverName);
+        // Retrieve the instance numbers of all active servers of exactly the provided type
+        BitSet activeInstanceNumbers = ActiveServerUtil.getSnapshot().getInstanceNumbers(serverType);
 
-        // Iterate over active servers to try and find an open slot for a new server to exist
+        // Try the free slots from the lowest up to find an open slot for a new server to exist
         int maxServerTypeCount = ConfigUtil.getMaxServerTypeCount(serverType);
-        for (int i=0; i<maxServerTypeCount; i++)
+        for (int i = activeInstanceNumbers.nextClearBit(0); i < maxServerTypeCount; i = activeInstanceNumbers.nextClearBit(i + 1))
         {
-            String serverName = serverType + i;
-            if (!activeServerNames.contains(serverName))
+            String serverName = new ServerKey(serverType, i).toServerName();
+            // Slots of instances that are still starting (and may not answer pings yet) are taken as well
+            if (!ServerLifecycleUtil.isTracked(serverName))
                 return serverName;
         }
 
@@ -112,40 +178,54 @@ public class ServerInitializeUtil
 
     /**
      * Creates a new server directory with the necessary files, updates its information according to the provided
-     * parameters, and starts the new server.
+     * parameters, and starts the new server. Each step runs as a separate stage on the provisioning threads.
      * @param serverType A server type (recognized by the Velocity proxy server's MCMG_NetworkHandler plugin) of which
      *                   a new instance will be created and initialized
      * @param newServerName The name of the new server
-     * @return Whether or not the new server initialization completed without IOExceptions
+     * @return A CompletableFuture that completes with whether or not the new server initialization completed without
+     * IOExceptions
      */
-    private static boolean initializeNewServer(String serverType, String newServerName)
+    private static CompletableFuture<Boolean> initializeNewServer(String serverType, String newServerName)
     {
         MCMG_NetworkHandler.getLogger().info("A new server, " + newServerName + ", is being created...");
+        Path serverTypePath = Paths.get("server-instances", serverType);
+
+        return CompletableFuture.runAsync(stage(() -> copyServerTemplateFolder(serverTypePath, newServerName)), executor)
+                .thenRunAsync(stage(() -> setNewServerPort(serverTypePath, newServerName)), executor)
+                .thenRunAsync(stage(() -> runNewServer(serverType, serverTypePath, newServerName)), executor)
+                .handle((result, ex) ->
+                {
+                    if (ex != null)
+                    {
+                        // Get the stack trace info as a string
+                        StringWriter sw = new StringWriter();
+                        PrintWriter pw = new PrintWriter(sw);
+                        (ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex).printStackTrace(pw);
+
+                        MCMG_NetworkHandler.getLogger().error("An exception occurred while creating the {} server: {}", newServerName, sw);
+                        return false;
+                    }
+
+                    MCMG_NetworkHandler.getLogger().info("A new server, " + newServerName + ", was successfully created and is initializing!");
+                    return true;
+                });
+    }
 
-        try
-        {
-            Path serverTypePath = Paths.get("server-instances", serverType);
-
-            copyServerTemplateFolder(serverTypePath, newServerName);
-            setNewServerPort(serverTypePath, newServerName);
-            runNewServer(serverTypePath, newServerName);
-        } catch (IOException ex)
+    /**
+     * @param stage A provisioning stage
+     * @return A Runnable that runs the stage, rethrowing any IOException as a CompletionException
+     */
+    private static Runnable stage(ProvisioningStage stage)
+    {
+        return () ->
         {
-            // Get the stack trace info as a string
-            StringWriter sw = new StringWriter();
-            PrintWriter pw = new PrintWriter(sw);
-            ex.printStackTrace(pw);
-
-            MCMG_NetworkHandler.getLogger().error("An exception occurred while creating the {} server: {}", newServerName, sw);
-            return false;
-        }
-
-        MCMG_NetworkHandler.getLogger().info("A new server, " + newServerName + ", was successfully created and is initializing!");
-        return true;
+            try { stage.run(); }
+            catch (IOException ex) { throw new CompletionException(ex); }
+        };
     }
 
     /**
-     * Copies contents of an existing server template folder (at the specified serverTypePath) to another folder (given
+     * Clones contents of an existing server template folder (at the specified serverTypePath) to another folder (given
      * the name of the specified newServerName) within the "active-servers" directory.
      * @param serverTypePath The path, ending in the requested server type, that leads to a subdirectory containing
      *                       startup files for that serverType
@@ -158,48 +238,26 @@ public class ServerInitializeUtil
         Path source = serverTypePath.resolve("template");
         Path destination = serverTypePath.resolve("active-servers").resolve(newServerName);
 
-        // Copy the contents of the source folder to the destination folder
-        try { copyDirectory(source, destination); }
+        // Clone the contents of the source folder to the destination folder
+        try { TemplateCloneUtil.cloneTemplate(source, destination); }
         catch (IOException ex) { throw new IOException(ex); }
     }
 
     /**
-     * Recursively copies all files and directories from the source directory to the target directory.
-     * @param source The path to the source directory to copy
-     * @param target The path to the target directory where the contents will be copied
-     * @throws IOException If an I/O error occurs during the copying process
-     */
-    public static void copyDirectory(Path source, Path target) throws IOException
-    {
-        Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
-            @Override
-            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-                Path targetDir = target.resolve(source.relativize(dir));
-                Files.createDirectories(targetDir);
-                return FileVisitResult.CONTINUE;
-            }
-
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                Files.copy(file, target.resolve(source.relativize(file)), StandardCopyOption.REPLACE_EXISTING);
-                return FileVisitResult.CONTINUE;
-            }
-        });
-    }
-
-    /**
-     * Updates the "server.properties" file of the newly created server to operate on the correct port.
+     * Leases a free port to the newly created server and updates its "server.properties" file to operate on that port.
      * <p>
      * Requires that copyTemplateFolder() has been successfully executed with the same provided parameters.
      * @param serverTypePath The path, ending in the requested server type, that leads to a subdirectory containing
      *                       startup files for that serverType
      * @param newServerName The name of the newly created server
-     * @throws IOException Indicates an I/O error occurred while accessing/editing files
+     * @throws IOException Indicates an I/O error occurred while accessing/editing files, or no free port was left
      */
     private static void setNewServerPort(Path serverTypePath, String newServerName) throws IOException
     {
-        // Retrieve/store the provided server's port
-        String serverPort = ConfigUtil.getServerPort(newServerName);
+        // Lease a free port to the new server, so the proxy can reach it once it is ready
+        int leasedPort = PortAllocatorUtil.leasePort(newServerName);
+        ServerRegistryUtil.addServer(newServerName, leasedPort);
+        String serverPort = String.valueOf(leasedPort);
 
         // Initialize path to new server's "server.properties" file
         Path serverPropertiesFile = serverTypePath.resolve("active-servers")
@@ -208,43 +266,32 @@ public class ServerInitializeUtil
 
         // Update server port properties
         Properties properties = new Properties();
-        properties.load(Files.newInputStream(serverPropertiesFile));
+        try (InputStream in = Files.newInputStream(serverPropertiesFile))
+        { properties.load(in); }
         properties.setProperty("server-port", serverPort);
         properties.setProperty("query.port", serverPort);
-        properties.store(Files.newOutputStream(serverPropertiesFile), null);
+        try (OutputStream out = Files.newOutputStream(serverPropertiesFile))
+        { properties.store(out, null); }
     }
 
     /**
-     * Creates and executes a batch file that runs the server .jar file in the specified path.
+     * Launches the server .jar file in the specified path as a process supervised by the ServerProcessUtil.
      * <p>
      * Requires that both copyTemplateFolder() and updateNewServerProperties() have been successfully executed with the
      * same provided parameters.
+     * @param serverType The server type of the newly created server
      * @param serverTypePath The path, ending in the requested server type, that leads to a subdirectory containing
      *                       startup files for that server type
      * @param newServerName The name of the newly created server
-     * @throws IOException Indicates an I/O error occurred while accessing/executing files
+     * @throws IOException Indicates an I/O error occurred while launching the server
      */
-    private static void runNewServer(Path serverTypePath, String newServerName) throws IOException
+    private static void runNewServer(String serverType, Path serverTypePath, String newServerName) throws IOException
     {
-        // Define the content of the batch file
-        String batchContent = "@setlocal enableextensions\n" +
-                "@cd /d \"%~dp0\"\n" +
-                "@echo off\n" +
-                "java -Xmx1024M -Xms512M -jar paper.jar --nogui\n";
-        if (keepConsoleOpen)
-            batchContent += "PAUSE";
-
-        // Construct the path to the batch file
-        Path batchFilePath = serverTypePath.resolve("active-servers")
-                .resolve(newServerName)
-                .resolve("run.bat");
-
-        // Write the batch content to the file
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(batchFilePath.toFile())))
-        { writer.write(batchContent); }
+        // The instance may have been stopped while it was being provisioned; it must then not be launched untracked
+        if (ServerLifecycleUtil.getState(newServerName) != InstanceState.STARTING)
+            throw new IOException(newServerName + " was stopped before it could be launched");
 
-        // Execute the batch file
-        ProcessBuilder builder = new ProcessBuilder("cmd", "/c", "start", "cmd", "/c", batchFilePath.toString());
-        builder.start();
+        Path serverDirectory = serverTypePath.resolve("active-servers").resolve(newServerName);
+        ServerProcessUtil.launchServer(serverType, newServerName, serverDirectory);
     }
 }
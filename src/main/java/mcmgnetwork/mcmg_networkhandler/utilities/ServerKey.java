@@ -0,0 +1,46 @@
+package mcmgnetwork.mcmg_networkhandler.utilities;
+
+/**
+ * Description: <p>
+ *  The identity of a network server, parsed from its name once (when the server becomes active) into its server type
+ *  and instance number, so that instances can be compared, sorted, and indexed by number without any string work.
+ *
+ *  <p>Author(s): Miles Bovero
+ *  <p>Date Created: 10/17/26
+ */
+public record ServerKey(String serverType, int instanceNumber)
+{
+    /**
+     * The most trailing digits an instance number may have; keeps instance numbers within an int and keeps the
+     * per-type instance number bitsets small
+     */
+    private static final int MAX_INSTANCE_DIGITS = 5;
+
+    /**
+     * Splits a server name into its server type and instance number (e.g. "KOTH_lobby12" -> "KOTH_lobby", 12).
+     * @param serverName The name of a server
+     * @return The key of the server; its instance number is -1 (and its server type is its whole name) if its name
+     * does not end in a number, ends in more digits than an instance number may have (e.g. a date stamp), or ends in a
+     * number with leading zeros (e.g. "lobby01", which would otherwise share a key with "lobby1"). Every key therefore
+     * identifies exactly one server name, which toServerName returns.
+     */
+    public static ServerKey parse(String serverName)
+    {
+        int typeLength = serverName.length();
+        while (typeLength > 0 && serverName.charAt(typeLength - 1) >= '0' && serverName.charAt(typeLength - 1) <= '9')
+            typeLength--;
+        int digitCount = serverName.length() - typeLength;
+        if (digitCount > MAX_INSTANCE_DIGITS || (digitCount > 1 && serverName.charAt(typeLength) == '0'))
+            return new ServerKey(serverName, -1);
+
+        String serverType = serverName.substring(0, typeLength);
+        int instanceNumber = typeLength < serverName.length() ? Integer.parseInt(serverName.substring(typeLength)) : -1;
+        return new ServerKey(serverType, instanceNumber);
+    }
+
+    /**
+     * @return The name of the server this key identifies
+     */
+    public String toServerName()
+    { return instanceNumber < 0 ? serverType : serverType + instanceNumber; }
+}
@@ -0,0 +1,340 @@
+package mcmgnetwork.mcmg_networkhandler.utilities;
+
+import mcmgnetwork.mcmg_networkhandler.MCMG_NetworkHandler;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Description: <p>
+ *  A utility class holding static data and functions that track the lifecycle state (STARTING, READY, DRAINING,
+ *  STOPPED) of each server instance started by this plugin. An instance becomes READY as soon as its process prints
+ *  the server's "Done" startup line or it answers its first ping, rather than after a fixed amount of time, and is
+ *  registered with the proxy at that point (see ServerRegistryUtil). Callers can compose on an instance becoming READY
+ *  through awaitReady.
+ *  <p>
+ *  Servers that were not started by this plugin (e.g. statically configured servers) are not tracked, and are treated
+ *  as READY whenever they answer pings.
+ *
+ *  <p>Author(s): Miles Bovero
+ *  <p>Date Created: 10/17/26
+ */
+public class ServerLifecycleUtil
+{
+
+    /**
+     * The lifecycle information of a tracked server instance
+     * @param serverType The server type of the instance
+     * @param state The current lifecycle state of the instance
+     * @param stateChangeTime The system time (in milliseconds) at which the instance entered its current state
+     * @param drainReported Whether or not the instance is DRAINING because it reported so itself, rather than because
+     *                      the proxy drained it
+     */
+    public record InstanceInfo(String serverType, InstanceState state, long stateChangeTime, boolean drainReported) {}
+
+    /**
+     * A map of the names of tracked server instances and their lifecycle information; STOPPED instances are removed
+     */
+    private static final Map<String, InstanceInfo> instances = new ConcurrentHashMap<>();
+
+    /**
+     * A map of the names of STARTING instances and the CompletableFuture completed once that instance becomes READY
+     * (with true) or stops without becoming READY (with false)
+     */
+    private static final Map<String, CompletableFuture<Boolean>> readyFutures = new ConcurrentHashMap<>();
+
+    /**
+     * Tasks run with an instance's name each time that instance becomes READY
+     */
+    private static final List<Consumer<String>> readyListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Handles startup timeouts of STARTING instances
+     */
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable ->
+    {
+        Thread thread = new Thread(runnable, "MCMG-lifecycle");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Registers a task to be run each time a server instance becomes READY.
+     * @param listener The task to run, provided the name of the instance that became READY
+     */
+    public static void addReadyListener(Consumer<String> listener)
+    { readyListeners.add(listener); }
+
+    /**
+     * Begins tracking a new server instance in the STARTING state, claiming its name before it is provisioned. The
+     * startup timeout only begins once its process has launched (see markLaunched).
+     * @param serverType The server type of the new instance
+     * @param serverName The name of the new instance
+     */
+    public static void markStarting(String serverType, String serverName)
+    {
+        InstanceInfo startingInfo = new InstanceInfo(serverType, InstanceState.STARTING, System.currentTimeMillis(), false);
+        instances.put(serverName, startingInfo);
+        // A previous instance with the same name must not keep the new instance from being pinged
+        CircuitBreakerUtil.clearBreaker(serverName);
+
+        CompletableFuture<Boolean> previousReadyFuture = readyFutures.put(serverName, new CompletableFuture<>());
+        if (previousReadyFuture != null)
+            previousReadyFuture.complete(false);
+    }
+
+    /**
+     * Starts the startup timeout of a STARTING instance whose process has just launched. If the instance is still
+     * STARTING once the configured startup timeout elapses, it is considered STOPPED and its process is stopped.
+     * @param serverName The name of the instance whose process launched
+     */
+    public static void markLaunched(String serverName)
+    {
+        InstanceInfo startingInfo = instances.get(serverName);
+        if (startingInfo == null || startingInfo.state() != InstanceState.STARTING)
+            return;
+
+        executor.schedule(() ->
+        {
+            // Only time out this exact start attempt, not a later instance reusing the same name
+            if (instances.remove(serverName, startingInfo))
+            {
+                MCMG_NetworkHandler.getLogger().warn("{} did not finish starting in time and is being stopped.", serverName);
+                completeReadyFuture(serverName, false);
+                ServerProcessUtil.stopServer(serverName);
+            }
+        }, ConfigUtil.getServerStartupTimeout(), TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param serverName The name of a server instance
+     * @return A CompletableFuture that completes with true once the instance is READY, or with false if it stops (or
+     * times out) first; already completed if the instance is not STARTING
+     */
+    public static CompletableFuture<Boolean> awaitReady(String serverName)
+    {
+        CompletableFuture<Boolean> readyFuture = readyFutures.get(serverName);
+        if (readyFuture == null)
+            return CompletableFuture.completedFuture(getState(serverName) == InstanceState.READY);
+
+        return readyFuture.copy();
+    }
+
+    /**
+     * Completes and forgets the ready future of the specified instance, if it has one.
+     * @param serverName The name of the instance
+     * @param ready Whether or not the instance became READY
+     */
+    private static void completeReadyFuture(String serverName, boolean ready)
+    {
+        CompletableFuture<Boolean> readyFuture = readyFutures.remove(serverName);
+        if (readyFuture != null)
+            readyFuture.complete(ready);
+    }
+
+    /**
+     * Moves a STARTING server instance into the READY state and notifies ready listeners; has no effect on instances
+     * in any other state.
+     * @param serverName The name of the instance that has finished starting
+     */
+    public static void markReady(String serverName)
+    {
+        // Only transition (and notify listeners) once, no matter how many READY signals arrive
+        AtomicReference<InstanceInfo> startingInfo = new AtomicReference<>();
+        instances.computeIfPresent(serverName, (name, current) ->
+        {
+            if (current.state() != InstanceState.STARTING)
+                return current;
+
+            startingInfo.set(current);
+            return withState(current, InstanceState.READY);
+        });
+        if (startingInfo.get() == null)
+            return;
+
+        // Pings refused while the instance was booting must not keep it out of the active servers
+        CircuitBreakerUtil.clearBreaker(serverName);
+
+        // Allow players to connect to the instance
+        ServerRegistryUtil.registerServer(serverName);
+
+        // Track how long instances of this type take to start, for demand forecasting
+        InstanceInfo info = startingInfo.get();
+        DemandForecastUtil.recordStartupTime(info.serverType(), System.currentTimeMillis() - info.stateChangeTime());
+
+        MCMG_NetworkHandler.getLogger().info("{} is ready!", serverName);
+        completeReadyFuture(serverName, true);
+        for (Consumer<String> listener : readyListeners)
+        {
+            try { listener.accept(serverName); }
+            catch (Exception ex)
+            { MCMG_NetworkHandler.getLogger().error("A server ready listener failed: {}", ex.getMessage()); }
+        }
+    }
+
+    /**
+     * Applies a lifecycle state that an instance reported about itself (e.g. in a heartbeat). A STARTING instance can
+     * only become READY this way; a READY instance may report that it is DRAINING, and may later report that it is
+     * READY again. Drains started by the proxy are never cancelled by the instance.
+     * @param serverName The name of the instance that reported its state
+     * @param reportedState The state the instance reported
+     */
+    public static void reportState(String serverName, InstanceState reportedState)
+    {
+        if (reportedState == InstanceState.READY)
+        {
+            markReady(serverName);
+            instances.computeIfPresent(serverName, (name, current) ->
+                    current.state() == InstanceState.DRAINING && current.drainReported() ? withState(current, InstanceState.READY) : current);
+        }
+        else if (reportedState == InstanceState.DRAINING)
+        {
+            instances.computeIfPresent(serverName, (name, current) -> current.state() == InstanceState.READY
+                    ? new InstanceInfo(current.serverType(), InstanceState.DRAINING, System.currentTimeMillis(), true) : current);
+        }
+    }
+
+    /**
+     * Moves a server instance into the DRAINING state, preventing new transfers to it.
+     * @param serverName The name of the instance to drain
+     */
+    public static void markDraining(String serverName)
+    { instances.computeIfPresent(serverName, (name, current) -> withState(current, InstanceState.DRAINING)); }
+
+    /**
+     * Returns a DRAINING server instance to the READY state (e.g. because it could not be emptied), allowing new
+     * transfers to it again; has no effect on instances in any other state.
+     * @param serverName The name of the instance to stop draining
+     */
+    public static void cancelDraining(String serverName)
+    {
+        instances.computeIfPresent(serverName, (name, current) ->
+                current.state() == InstanceState.DRAINING ? withState(current, InstanceState.READY) : current);
+    }
+
+    /**
+     * Stops tracking a server instance, unregistering it from the proxy and freeing its name and port for a new
+     * instance.
+     * @param serverName The name of the instance that is no longer running
+     */
+    public static void markStopped(String serverName)
+    {
+        instances.remove(serverName);
+        completeReadyFuture(serverName, false);
+        ServerRegistryUtil.removeServer(serverName);
+        PortAllocatorUtil.releasePort(serverName);
+        CircuitBreakerUtil.clearBreaker(serverName);
+    }
+
+    /**
+     * Handles a line of console output printed by a server instance, moving the instance into the READY state once it
+     * prints the server's "Done" startup line.
+     * @param serverName The name of the instance that printed the line
+     * @param line The line of console output
+     */
+    public static void handleConsoleLine(String serverName, String line)
+    {
+        if (line.contains("Done (") && getState(serverName) == InstanceState.STARTING)
+            markReady(serverName);
+    }
+
+    /**
+     * @param serverName The name of a server instance
+     * @return The lifecycle state of the instance; STOPPED if the instance is not tracked
+     */
+    public static InstanceState getState(String serverName)
+    {
+        InstanceInfo info = instances.get(serverName);
+        return info == null ? InstanceState.STOPPED : info.state();
+    }
+
+    /**
+     * @param serverName The name of a server instance
+     * @return Whether or not the instance is tracked by this utility (i.e. was started by this plugin and has not stopped)
+     */
+    public static boolean isTracked(String serverName)
+    { return instances.containsKey(serverName); }
+
+    /**
+     * @param serverName The name of a server that answered a ping
+     * @return Whether or not new transfers may be sent to the server; untracked servers are always transferable
+     */
+    public static boolean isTransferable(String serverName)
+    {
+        InstanceInfo info = instances.get(serverName);
+        return info == null || info.state() == InstanceState.READY;
+    }
+
+    /**
+     * @param serverType A server type recognized by the Velocity proxy server's MCMG_NetworkHandler plugin
+     * @return Whether or not any instance of the specified server type is currently STARTING
+     */
+    public static boolean isStarting(String serverType)
+    { return countInstances(serverType, InstanceState.STARTING) > 0; }
+
+    /**
+     * @param serverType A server type recognized by the Velocity proxy server's MCMG_NetworkHandler plugin
+     * @param state The lifecycle state to count instances in
+     * @return The number of tracked instances of the specified server type in the specified state
+     */
+    public static int countInstances(String serverType, InstanceState state)
+    {
+        int count = 0;
+        for (InstanceInfo info : instances.values())
+            if (info.serverType().equals(serverType) && info.state() == state)
+                count++;
+
+        return count;
+    }
+
+    /**
+     * @param serverType A server type recognized by the Velocity proxy server's MCMG_NetworkHandler plugin
+     * @return A map of the names of tracked instances of the specified server type and their lifecycle information
+     */
+    public static Map<String, InstanceInfo> getInstances(String serverType)
+    {
+        Map<String, InstanceInfo> serverTypeInstances = new HashMap<>();
+        for (Map.Entry<String, InstanceInfo> entry : instances.entrySet())
+            if (entry.getValue().serverType().equals(serverType))
+                serverTypeInstances.put(entry.getKey(), entry.getValue());
+
+        return serverTypeInstances;
+    }
+
+    /**
+     * @return The server types of all tracked instances
+     */
+    public static Set<String> getServerTypes()
+    {
+        Set<String> serverTypes = new HashSet<>();
+        for (InstanceInfo info : instances.values())
+            serverTypes.add(info.serverType());
+
+        return serverTypes;
+    }
+
+    /**
+     * Stops the startup timeout thread, discarding any pending timeouts.
+     */
+    public static void shutdown()
+    { executor.shutdownNow(); }
+
+    /**
+     * @param info The current lifecycle information of an instance
+     * @param state The state to move the instance into
+     * @return New lifecycle information of the same instance in the provided state
+     */
+    private static InstanceInfo withState(InstanceInfo info, InstanceState state)
+    { return new InstanceInfo(info.serverType(), state, System.currentTimeMillis(), false); }
+}
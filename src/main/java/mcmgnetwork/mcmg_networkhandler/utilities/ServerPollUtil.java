@@ -0,0 +1,75 @@
+package mcmgnetwork.mcmg_networkhandler.utilities;
+
+import mcmgnetwork.mcmg_networkhandler.MCMG_NetworkHandler;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Description: <p>
+ *  A utility class that periodically refreshes the ActiveServerUtil's active server information in the background, so
+ *  that transfer decisions can read recent server information without pinging the entire network themselves.
+ *
+ *  <p>Author(s): Miles Bovero
+ *  <p>Date Created: 10/17/26
+ */
+public class ServerPollUtil
+{
+
+    /**
+     * Runs the periodic server information refreshes
+     */
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable ->
+    {
+        Thread thread = new Thread(runnable, "MCMG-server-poll");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The currently scheduled polling task; null if polling has not been started
+     */
+    private static ScheduledFuture<?> pollTask;
+
+    /**
+     * Begins refreshing active server information at the configured poll interval. Each refresh waits for the previous
+     * one to complete, so slow servers never cause refreshes to pile up.
+     */
+    public static synchronized void startPolling()
+    {
+        // Only allow one polling task to run at a time
+        if (pollTask != null) return;
+
+        int pollInterval = ConfigUtil.getServerPollInterval();
+        pollTask = executor.scheduleWithFixedDelay(ServerPollUtil::pollServers, 0, pollInterval, TimeUnit.MILLISECONDS);
+
+        MCMG_NetworkHandler.getLogger().info("Polling network servers every {} milliseconds.", pollInterval);
+    }
+
+    /**
+     * Stops refreshing active server information in the background.
+     */
+    public static synchronized void stopPolling()
+    {
+        if (pollTask != null)
+        {
+            pollTask.cancel(false);
+            pollTask = null;
+        }
+
+        executor.shutdown();
+    }
+
+    /**
+     * Refreshes active server information and waits for the refresh to complete.
+     */
+    private static void pollServers()
+    {
+        // Exceptions must not escape; they would silently cancel all future polls
+        try { ActiveServerUtil.getServerInfoFuture().join(); }
+        catch (Exception ex)
+        { MCMG_NetworkHandler.getLogger().warn("Failed to poll network servers: {}", ex.getMessage()); }
+    }
+}
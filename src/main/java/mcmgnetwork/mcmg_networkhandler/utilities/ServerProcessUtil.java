@@ -0,0 +1,363 @@
+package mcmgnetwork.mcmg_networkhandler.utilities;
+
+import mcmgnetwork.mcmg_networkhandler.MCMG_NetworkHandler;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Description: <p>
+ *  A utility class holding static data and functions that launch and supervise server instance processes. Instances
+ *  are launched directly (without any platform-specific shell scripts) and their Process handles are kept, allowing
+ *  the plugin to read their console output, stop them, and react to crashes immediately: a crashed instance is removed
+ *  from the active servers at once and restarted with exponential backoff.
+ *
+ *  <p>Author(s): Miles Bovero
+ *  <p>Date Created: 10/17/26
+ */
+public class ServerProcessUtil
+{
+
+    /**
+     * The number of most recent console output lines kept for each instance
+     */
+    private static final int CONSOLE_HISTORY_LINES = 200;
+
+    /**
+     * The number of seconds an instance must run for before a crash no longer counts towards its restart backoff
+     */
+    private static final int STABLE_RUN_TIME = 300;
+
+    /**
+     * The maximum number of seconds to wait before restarting a crashed instance
+     */
+    private static final int MAX_RESTART_DELAY = 300;
+
+    /**
+     * A server instance process supervised by this utility
+     */
+    private static class SupervisedServer
+    {
+        private final String serverType;
+        private final String serverName;
+        private final Path serverDirectory;
+
+        /**
+         * The most recent lines of the instance's console output; access must be synchronized on the deque itself
+         */
+        private final Deque<String> consoleHistory = new ArrayDeque<>(CONSOLE_HISTORY_LINES);
+
+        private volatile Process process;
+        private volatile long launchTime;
+        private volatile boolean stopRequested;
+        private volatile boolean deleteOnStop;
+        private int consecutiveCrashes;
+
+        private SupervisedServer(String serverType, String serverName, Path serverDirectory)
+        {
+            this.serverType = serverType;
+            this.serverName = serverName;
+            this.serverDirectory = serverDirectory;
+        }
+    }
+
+    /**
+     * A map of the names of supervised instances and their supervision information
+     */
+    private static final Map<String, SupervisedServer> supervisedServers = new ConcurrentHashMap<>();
+
+    /**
+     * Reads instance console output; each running instance occupies one thread, so output never blocks other work
+     */
+    private static final ExecutorService outputExecutor = Executors.newCachedThreadPool(runnable ->
+    {
+        Thread thread = new Thread(runnable, "MCMG-server-output");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Handles delayed restarts of crashed instances and forced termination of instances that fail to stop
+     */
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable ->
+    {
+        Thread thread = new Thread(runnable, "MCMG-server-supervisor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Launches a new server instance from its (already prepared) server directory and begins supervising it.
+     * @param serverType The server type of the new instance
+     * @param serverName The name of the new instance
+     * @param serverDirectory The instance's server directory, containing its server jar
+     * @throws IOException Indicates an I/O error occurred while launching the instance's process
+     */
+    public static void launchServer(String serverType, String serverName, Path serverDirectory) throws IOException
+    {
+        SupervisedServer server = new SupervisedServer(serverType, serverName, serverDirectory);
+        supervisedServers.put(serverName, server);
+
+        try { startProcess(server); }
+        catch (IOException ex)
+        {
+            supervisedServers.remove(serverName, server);
+            throw ex;
+        }
+    }
+
+    /**
+     * Gracefully stops a supervised instance by issuing the "stop" console command; the instance is forcibly
+     * terminated if it has not exited once the configured stop timeout elapses. Has no effect on unsupervised servers.
+     * @param serverName The name of the instance to stop
+     */
+    public static void stopServer(String serverName)
+    {
+        SupervisedServer server = supervisedServers.get(serverName);
+        if (server == null)
+            return;
+
+        server.stopRequested = true;
+        Process process = server.process;
+        if (process == null || !process.isAlive())
+            return;
+
+        MCMG_NetworkHandler.getLogger().info("Stopping {}...", serverName);
+        try
+        {
+            Writer console = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+            console.write("stop\n");
+            console.flush();
+        }
+        catch (IOException ex)
+        {
+            // The console is unavailable, so the instance cannot be stopped gracefully
+            process.destroy();
+        }
+
+        executor.schedule(() ->
+        {
+            if (process.isAlive())
+            {
+                MCMG_NetworkHandler.getLogger().warn("{} did not stop in time and is being terminated.", serverName);
+                process.destroyForcibly();
+            }
+        }, ConfigUtil.getServerStopTimeout(), TimeUnit.SECONDS);
+    }
+
+    /**
+     * Gracefully stops a supervised instance the same way as stopServer, then deletes its server directory once it has
+     * exited. Has no effect on unsupervised servers.
+     * @param serverName The name of the instance to stop and delete
+     */
+    public static void stopAndDeleteServer(String serverName)
+    {
+        SupervisedServer server = supervisedServers.get(serverName);
+        if (server == null)
+            return;
+
+        server.deleteOnStop = true;
+        stopServer(serverName);
+    }
+
+    /**
+     * Gracefully stops every supervised instance.
+     */
+    public static void stopAllServers()
+    {
+        for (String serverName : supervisedServers.keySet())
+            stopServer(serverName);
+    }
+
+    /**
+     * Stops the supervisor thread once its already scheduled tasks have run, so that instances that fail to stop are
+     * still terminated; no further restarts are scheduled.
+     */
+    public static void shutdown()
+    { executor.shutdown(); }
+
+    /**
+     * @param serverName The name of a supervised instance
+     * @return The most recent lines of the instance's console output (oldest first); empty if the instance is not
+     * supervised
+     */
+    public static List<String> getConsoleHistory(String serverName)
+    {
+        SupervisedServer server = supervisedServers.get(serverName);
+        if (server == null)
+            return List.of();
+
+        synchronized (server.consoleHistory)
+        { return new ArrayList<>(server.consoleHistory); }
+    }
+
+    /**
+     * Starts the provided instance's process, begins reading its console output, and begins watching for its exit.
+     * @param server The instance to start
+     * @throws IOException Indicates an I/O error occurred while starting the process
+     */
+    private static void startProcess(SupervisedServer server) throws IOException
+    {
+        // Build the launch command from the server type's JVM profile
+        List<String> command = new ArrayList<>();
+        command.add("java");
+        command.add("-Xmx" + ConfigUtil.getMaxHeap(server.serverType) + "M");
+        command.add("-Xms" + ConfigUtil.getMinHeap(server.serverType) + "M");
+        command.addAll(ConfigUtil.getJvmFlags(server.serverType));
+        command.addAll(List.of("-jar", "paper.jar", "--nogui"));
+
+        ProcessBuilder builder = new ProcessBuilder(command)
+                .directory(server.serverDirectory.toFile())
+                .redirectErrorStream(true);
+
+        Process process = builder.start();
+        server.process = process;
+        server.launchTime = System.currentTimeMillis();
+
+        outputExecutor.execute(() -> readConsoleOutput(server, process));
+        process.onExit().thenAccept(exitedProcess -> handleExit(server, exitedProcess));
+
+        // The startup timeout only covers the time the process takes to start, not its provisioning
+        ServerLifecycleUtil.markLaunched(server.serverName);
+    }
+
+    /**
+     * Reads the provided process's console output until it exits, recording the most recent lines and passing each
+     * line to the ServerLifecycleUtil (which detects when the instance has finished starting).
+     * @param server The instance that the process belongs to
+     * @param process The process to read the console output of
+     */
+    private static void readConsoleOutput(SupervisedServer server, Process process)
+    {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8)))
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                synchronized (server.consoleHistory)
+                {
+                    if (server.consoleHistory.size() == CONSOLE_HISTORY_LINES)
+                        server.consoleHistory.removeFirst();
+                    server.consoleHistory.addLast(line);
+                }
+
+                ServerLifecycleUtil.handleConsoleLine(server.serverName, line);
+            }
+        }
+        catch (IOException ex)
+        {
+            // The process's output stream closes when it exits; exits are handled by handleExit
+        }
+    }
+
+    /**
+     * Handles the exit of an instance's process. Requested stops end supervision; anything else is treated as a crash,
+     * removing the instance from the active servers immediately and scheduling a restart with exponential backoff.
+     * @param server The instance whose process exited
+     * @param process The process that exited
+     */
+    private static void handleExit(SupervisedServer server, Process process)
+    {
+        String serverName = server.serverName;
+
+        // Ignore exits of processes that have already been replaced
+        if (server.process != process)
+            return;
+
+        // Either way, the instance can no longer receive players
+        ActiveServerUtil.removeServer(serverName);
+        ServerRegistryUtil.unregisterServer(serverName);
+
+        if (server.stopRequested)
+        {
+            MCMG_NetworkHandler.getLogger().info("{} has stopped.", serverName);
+            endSupervision(server);
+            return;
+        }
+
+        // Crashes after a long stable run do not count towards the restart backoff
+        if (System.currentTimeMillis() - server.launchTime > STABLE_RUN_TIME * 1000L)
+            server.consecutiveCrashes = 0;
+        server.consecutiveCrashes++;
+
+        MCMG_NetworkHandler.getLogger().error("{} crashed with exit code {}. Last console output:\n{}", serverName,
+                process.exitValue(), String.join("\n", getConsoleHistory(serverName)));
+
+        if (server.consecutiveCrashes > ConfigUtil.getMaxServerRestarts())
+        {
+            MCMG_NetworkHandler.getLogger().error("{} crashed too many times in a row and will not be restarted.", serverName);
+            endSupervision(server);
+            return;
+        }
+
+        // Restart after an exponentially increasing delay; the instance keeps its slot but receives no transfers meanwhile
+        long restartDelay = Math.min((long) ConfigUtil.getServerRestartBackoff() << (server.consecutiveCrashes - 1), MAX_RESTART_DELAY);
+        ServerLifecycleUtil.markDraining(serverName);
+        MCMG_NetworkHandler.getLogger().info("Restarting {} in {} seconds...", serverName, restartDelay);
+
+        executor.schedule(() ->
+        {
+            if (server.stopRequested)
+            {
+                endSupervision(server);
+                return;
+            }
+
+            ServerLifecycleUtil.markStarting(server.serverType, serverName);
+            try { startProcess(server); }
+            catch (IOException ex)
+            {
+                MCMG_NetworkHandler.getLogger().error("Failed to restart {}: {}", serverName, ex.getMessage());
+                endSupervision(server);
+            }
+        }, restartDelay, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops supervising an instance that is no longer running, freeing its name and memory for a new instance.
+     * @param server The instance to stop supervising
+     */
+    private static void endSupervision(SupervisedServer server)
+    {
+        if (server.deleteOnStop)
+            deleteServerDirectory(server);
+
+        supervisedServers.remove(server.serverName, server);
+        ServerLifecycleUtil.markStopped(server.serverName);
+        MemoryBudgetUtil.release(server.serverName);
+    }
+
+    /**
+     * Recursively deletes the server directory of an instance that is no longer running.
+     * @param server The instance whose server directory will be deleted
+     */
+    private static void deleteServerDirectory(SupervisedServer server)
+    {
+        try (Stream<Path> paths = Files.walk(server.serverDirectory))
+        {
+            // Delete the deepest paths first, so that directories are empty by the time they are deleted
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList())
+                Files.delete(path);
+
+            MCMG_NetworkHandler.getLogger().info("Deleted the server directory of {}.", server.serverName);
+        }
+        catch (IOException ex)
+        {
+            MCMG_NetworkHandler.getLogger().error("Failed to delete the server directory of {}: {}", server.serverName, ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package mcmgnetwork.mcmg_networkhandler.utilities;
+
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import com.velocitypowered.api.proxy.server.ServerInfo;
+import mcmgnetwork.mcmg_networkhandler.MCMG_NetworkHandler;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Description: <p>
+ *  A utility class holding static data and functions that register server instances started by this plugin with the
+ *  Velocity proxy at runtime. An instance is registered once it becomes READY, and unregistered as soon as it stops
+ *  (or crashes), so that instances never need to be configured in Velocity ahead of time. Until an instance is
+ *  registered, it can still be pinged through an unregistered ("raw") server handle.
+ *
+ *  <p>Author(s): Miles Bovero
+ *  <p>Date Created: 10/17/26
+ */
+public class ServerRegistryUtil
+{
+
+    /**
+     * A map of the names of instances started by this plugin and their unregistered server handles
+     */
+    private static final Map<String, RegisteredServer> rawServers = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the server information of a new instance from its leased port. The instance is not registered with the
+     * proxy until registerServer is called.
+     * @param serverName The name of the new instance
+     * @param port The port leased to the new instance
+     */
+    public static void addServer(String serverName, int port)
+    {
+        ServerInfo serverInfo = new ServerInfo(serverName, new InetSocketAddress(ConfigUtil.getInstanceHost(), port));
+        rawServers.put(serverName, MCMG_NetworkHandler.getProxy().createRawRegisteredServer(serverInfo));
+    }
+
+    /**
+     * Registers an instance started by this plugin with the proxy, allowing players to connect to it; has no effect if
+     * the instance is unknown or already registered.
+     * @param serverName The name of the instance to register
+     */
+    public static void registerServer(String serverName)
+    {
+        RegisteredServer rawServer = rawServers.get(serverName);
+        ProxyServer proxy = MCMG_NetworkHandler.getProxy();
+        if (rawServer == null || proxy.getServer(serverName).isPresent())
+            return;
+
+        proxy.registerServer(rawServer.getServerInfo());
+        MCMG_NetworkHandler.getLogger().info("Registered {} with the proxy.", serverName);
+    }
+
+    /**
+     * Unregisters an instance started by this plugin from the proxy; it may be registered again later (e.g. once
+     * restarted). Has no effect on servers that were not started by this plugin.
+     * @param serverName The name of the instance to unregister
+     */
+    public static void unregisterServer(String serverName)
+    {
+        if (!rawServers.containsKey(serverName))
+            return;
+
+        Optional<RegisteredServer> server = MCMG_NetworkHandler.getProxy().getServer(serverName);
+        server.ifPresent(registeredServer -> MCMG_NetworkHandler.getProxy().unregisterServer(registeredServer.getServerInfo()));
+    }
+
+    /**
+     * Unregisters an instance started by this plugin from the proxy and forgets its server information.
+     * @param serverName The name of the instance that has stopped
+     */
+    public static void removeServer(String serverName)
+    {
+        unregisterServer(serverName);
+        rawServers.remove(serverName);
+    }
+
+    /**
+     * @return Unregistered server handles of the instances started by this plugin that are not currently registered with
+     * the proxy (e.g. because they are still starting); used to ping them
+     */
+    public static List<RegisteredServer> getUnregisteredServers()
+    {
+        List<RegisteredServer> unregisteredServers = new ArrayList<>();
+        for (Map.Entry<String, RegisteredServer> entry : rawServers.entrySet())
+            if (MCMG_NetworkHandler.getProxy().getServer(entry.getKey()).isEmpty())
+                unregisteredServers.add(entry.getValue());
+
+        return unregisteredServers;
+    }
+}
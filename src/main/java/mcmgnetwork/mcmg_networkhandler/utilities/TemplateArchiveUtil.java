@@ -0,0 +1,459 @@
+package mcmgnetwork.mcmg_networkhandler.utilities;
+
+import mcmgnetwork.mcmg_networkhandler.MCMG_NetworkHandler;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Description: <p>
+ *  A utility class holding static data and functions that pack each server type's template folder into a single,
+ *  checksummed archive file, and unpack new server instances from that archive. The archive is built once and only
+ *  rebuilt when the template's contents change, so starting an instance no longer costs an open/read of every small
+ *  template file; instead, files are unpacked in parallel with positional NIO channel transfers from the one archive.
+ *  <p>
+ *  Archives are stored next to their template folder as "template.pack", and consist of a header (format version,
+ *  template fingerprint, and an entry for every directory/file with its offset, length and CRC32 checksum) followed
+ *  by the concatenated file contents. Checksums are verified whenever an archive is loaded from disk.
+ *
+ *  <p>Author(s): Miles Bovero
+ *  <p>Date Created: 10/17/26
+ */
+public class TemplateArchiveUtil
+{
+
+    /**
+     * Identifies a file as a template archive
+     */
+    private static final int MAGIC_NUMBER = 0x4D434D47;
+
+    /**
+     * The version of the archive format written by this utility
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * The size of the buffer used while packing and verifying archives
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * The smallest number of bytes an entry takes up in an archive's header (an entry with an empty path)
+     */
+    private static final int MIN_ENTRY_HEADER_SIZE = 1 + 2 + Long.BYTES * 2 + Integer.BYTES;
+
+    /**
+     * A directory or file stored in a template archive
+     * @param path The entry's path relative to the template folder, using "/" separators
+     * @param directory Whether or not the entry is a directory
+     * @param offset The offset of the file's contents from the start of the archive's data section
+     * @param length The length of the file's contents
+     * @param checksum The CRC32 checksum of the file's contents
+     */
+    private record Entry(String path, boolean directory, long offset, long length, int checksum) {}
+
+    /**
+     * A template archive that has been built or verified
+     * @param archivePath The path to the archive file
+     * @param fingerprint The fingerprint of the template folder the archive was built from
+     * @param entries The archive's entries
+     * @param dataStart The position in the archive file at which its data section starts
+     * @param checkTime The system time (in milliseconds) at which the archive was last checked against its template
+     */
+    private record TemplateArchive(Path archivePath, byte[] fingerprint, List<Entry> entries, long dataStart, long checkTime) {}
+
+    /**
+     * A map of template folder paths and the archive built from that template
+     */
+    private static final Map<Path, TemplateArchive> archives = new ConcurrentHashMap<>();
+
+    /**
+     * A map of template folder paths and the object locked while checking or building that template's archive
+     */
+    private static final Map<Path, Object> archiveLocks = new ConcurrentHashMap<>();
+
+    /**
+     * Unpacks the archive of the provided template folder into the target directory, building or rebuilding the
+     * archive first if it is missing, corrupt, or out of date.
+     * @param templatePath The path to the template folder to unpack an instance of
+     * @param target The path to the directory where the template will be unpacked
+     * @throws IOException If an I/O error occurs while building or unpacking the archive
+     */
+    public static void extractTemplate(Path templatePath, Path target) throws IOException
+    {
+        Path normalizedTemplatePath = templatePath.toAbsolutePath().normalize();
+        Path normalizedTarget = target.toAbsolutePath().normalize();
+
+        // The archive is opened while its entries are known to describe it; an archive rebuilt afterwards replaces
+        // the file at its path, but never the file this channel has open
+        TemplateArchive archive;
+        FileChannel archiveChannel;
+        synchronized (archiveLocks.computeIfAbsent(normalizedTemplatePath, path -> new Object()))
+        {
+            archive = getArchive(normalizedTemplatePath);
+            archiveChannel = FileChannel.open(archive.archivePath(), StandardOpenOption.READ);
+        }
+
+        try (archiveChannel)
+        {
+            // Create the directory structure up front
+            Files.createDirectories(normalizedTarget);
+            for (Entry entry : archive.entries())
+                if (entry.directory())
+                    Files.createDirectories(resolveEntry(normalizedTarget, entry));
+
+            // Unpack every file in parallel; positional transfers allow all files to share one archive channel
+            List<TemplateCloneUtil.FileTask> fileExtractions = new ArrayList<>();
+            for (Entry entry : archive.entries())
+            {
+                if (entry.directory()) continue;
+
+                Path file = resolveEntry(normalizedTarget, entry);
+                long start = archive.dataStart() + entry.offset();
+                fileExtractions.add(() ->
+                {
+                    try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+                    {
+                        long transferred = 0;
+                        while (transferred < entry.length())
+                        {
+                            long chunk = archiveChannel.transferTo(start + transferred, entry.length() - transferred, fileChannel);
+                            if (chunk <= 0)
+                                throw new IOException("The template archive ended before " + entry.path() + " was unpacked!");
+                            transferred += chunk;
+                        }
+                    }
+                });
+            }
+
+            TemplateCloneUtil.runInParallel(fileExtractions);
+        }
+    }
+
+    /**
+     * Retrieves the up-to-date archive of the provided template folder. The template is only re-examined for changes
+     * once the configured archive check interval has elapsed since it was last examined. Must only be called while
+     * holding the template's archive lock, since the archive file may be rebuilt.
+     * @param templatePath The absolute, normalized path to a template folder
+     * @return The template's archive
+     * @throws IOException If an I/O error occurs while examining the template or building its archive
+     */
+    private static TemplateArchive getArchive(Path templatePath) throws IOException
+    {
+        long checkIntervalMillis = ConfigUtil.getTemplateArchiveCheckInterval() * 1000L;
+
+        TemplateArchive archive = archives.get(templatePath);
+        if (archive != null && System.currentTimeMillis() - archive.checkTime() < checkIntervalMillis)
+            return archive;
+
+        List<Entry> entries = listTemplateEntries(templatePath);
+        byte[] fingerprint = fingerprintTemplate(templatePath, entries);
+
+        if (archive != null && Arrays.equals(archive.fingerprint(), fingerprint))
+        {
+            // The template has not changed; only record that it was checked
+            archive = new TemplateArchive(archive.archivePath(), fingerprint, archive.entries(), archive.dataStart(), System.currentTimeMillis());
+        }
+        else
+        {
+            Path archivePath = templatePath.resolveSibling(templatePath.getFileName() + ".pack");
+
+            // Reuse an existing archive on disk if it matches the template; otherwise, (re)build it
+            archive = readArchive(archivePath, fingerprint);
+            if (archive == null)
+                archive = packTemplate(templatePath, archivePath, entries, fingerprint);
+        }
+
+        archives.put(templatePath, archive);
+        return archive;
+    }
+
+    /**
+     * @param templatePath The path to a template folder
+     * @return An entry (without offsets or checksums) for every directory and file within the template, sorted by path
+     * @throws IOException If an I/O error occurs while walking the template
+     */
+    private static List<Entry> listTemplateEntries(Path templatePath) throws IOException
+    {
+        List<Entry> entries = new ArrayList<>();
+        Files.walkFileTree(templatePath, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!dir.equals(templatePath))
+                    entries.add(new Entry(toEntryPath(templatePath, dir), true, 0, 0, 0));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                entries.add(new Entry(toEntryPath(templatePath, file), false, 0, attrs.size(), 0));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        entries.sort(Comparator.comparing(Entry::path));
+        return entries;
+    }
+
+    /**
+     * @param templatePath The path to a template folder
+     * @param entries The template's entries, as returned by listTemplateEntries
+     * @return A fingerprint of the template that changes whenever any of its files are added, removed, resized or
+     * modified
+     * @throws IOException If an I/O error occurs while reading file modification times
+     */
+    private static byte[] fingerprintTemplate(Path templatePath, List<Entry> entries) throws IOException
+    {
+        MessageDigest digest;
+        try { digest = MessageDigest.getInstance("SHA-256"); }
+        catch (NoSuchAlgorithmException ex) { throw new IOException(ex); }
+
+        ByteBuffer fileInfo = ByteBuffer.allocate(Long.BYTES * 2);
+        for (Entry entry : entries)
+        {
+            digest.update(entry.path().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) (entry.directory() ? 1 : 0));
+
+            if (!entry.directory())
+            {
+                long lastModified = Files.getLastModifiedTime(templatePath.resolve(entry.path())).toMillis();
+                digest.update(fileInfo.clear().putLong(entry.length()).putLong(lastModified).flip());
+            }
+        }
+
+        return digest.digest();
+    }
+
+    /**
+     * Packs the provided template folder into a new archive, replacing any existing archive at the provided path.
+     * @param templatePath The path to the template folder to pack
+     * @param archivePath The path to write the archive to
+     * @param entries The template's entries, as returned by listTemplateEntries
+     * @param fingerprint The template's fingerprint
+     * @return The newly built archive
+     * @throws IOException If an I/O error occurs while packing the template
+     */
+    private static TemplateArchive packTemplate(Path templatePath, Path archivePath, List<Entry> entries, byte[] fingerprint) throws IOException
+    {
+        MCMG_NetworkHandler.getLogger().info("Packing the server template at {}...", templatePath);
+
+        // Assign each file its offset within the data section
+        List<Entry> packedEntries = new ArrayList<>(entries.size());
+        long offset = 0;
+        for (Entry entry : entries)
+        {
+            packedEntries.add(new Entry(entry.path(), entry.directory(), offset, entry.length(), 0));
+            offset += entry.length();
+        }
+
+        // The header has a fixed size regardless of checksum values, so file contents can be written before it
+        long dataStart = writeHeader(fingerprint, packedEntries).length;
+
+        Path tempArchivePath = archivePath.resolveSibling(archivePath.getFileName() + ".tmp");
+        try (FileChannel archiveChannel = FileChannel.open(tempArchivePath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            archiveChannel.position(dataStart);
+
+            // Write each file's contents, computing its checksum along the way
+            for (int i=0; i<packedEntries.size(); i++)
+            {
+                Entry entry = packedEntries.get(i);
+                if (entry.directory()) continue;
+
+                CRC32 checksum = new CRC32();
+                long written = 0;
+                try (FileChannel fileChannel = FileChannel.open(templatePath.resolve(entry.path()), StandardOpenOption.READ))
+                {
+                    while (fileChannel.read(buffer.clear()) != -1)
+                    {
+                        buffer.flip();
+                        checksum.update(buffer.duplicate());
+                        written += buffer.remaining();
+                        while (buffer.hasRemaining())
+                            archiveChannel.write(buffer);
+                    }
+                }
+
+                if (written != entry.length())
+                    throw new IOException("The template file " + entry.path() + " changed while its template was being packed!");
+
+                packedEntries.set(i, new Entry(entry.path(), false, entry.offset(), entry.length(), (int) checksum.getValue()));
+            }
+
+            // Write the header (now containing checksums) at the start of the archive
+            archiveChannel.write(ByteBuffer.wrap(writeHeader(fingerprint, packedEntries)), 0);
+            archiveChannel.force(true);
+        }
+
+        Files.move(tempArchivePath, archivePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        MCMG_NetworkHandler.getLogger().info("Packed {} template entries into {}.", packedEntries.size(), archivePath);
+        return new TemplateArchive(archivePath, fingerprint, List.copyOf(packedEntries), dataStart, System.currentTimeMillis());
+    }
+
+    /**
+     * @param fingerprint The fingerprint of the template being packed
+     * @param entries The entries of the template being packed, with offsets assigned
+     * @return The serialized archive header
+     * @throws IOException If an I/O error occurs while serializing the header
+     */
+    private static byte[] writeHeader(byte[] fingerprint, List<Entry> entries) throws IOException
+    {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(header))
+        {
+            out.writeInt(MAGIC_NUMBER);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(fingerprint.length);
+            out.write(fingerprint);
+            out.writeInt(entries.size());
+            for (Entry entry : entries)
+            {
+                out.writeBoolean(entry.directory());
+                out.writeUTF(entry.path());
+                out.writeLong(entry.offset());
+                out.writeLong(entry.length());
+                out.writeInt(entry.checksum());
+            }
+        }
+
+        return header.toByteArray();
+    }
+
+    /**
+     * Loads and verifies an existing archive.
+     * @param archivePath The path to the archive file
+     * @param fingerprint The current fingerprint of the archive's template
+     * @return The loaded archive; or null if the archive does not exist, was built from a different version of the
+     * template or in a different format, or fails checksum verification
+     */
+    private static TemplateArchive readArchive(Path archivePath, byte[] fingerprint)
+    {
+        if (!Files.isRegularFile(archivePath))
+            return null;
+
+        try (FileChannel archiveChannel = FileChannel.open(archivePath, StandardOpenOption.READ))
+        {
+            // Read and check the header
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(archiveChannel)));
+            if (in.readInt() != MAGIC_NUMBER || in.readInt() != FORMAT_VERSION)
+                return null;
+
+            // Lengths are checked before anything is allocated for them, so a corrupt header only causes a rebuild
+            int fingerprintLength = in.readInt();
+            if (fingerprintLength != fingerprint.length)
+                return null;
+
+            byte[] archiveFingerprint = new byte[fingerprintLength];
+            in.readFully(archiveFingerprint);
+            if (!Arrays.equals(archiveFingerprint, fingerprint))
+                return null;
+
+            long archiveSize = archiveChannel.size();
+            int entryCount = in.readInt();
+            if (entryCount < 0 || entryCount > archiveSize / MIN_ENTRY_HEADER_SIZE)
+                throw new IOException("The archive's entry count " + entryCount + " does not fit the archive");
+
+            List<Entry> entries = new ArrayList<>(entryCount);
+            for (int i=0; i<entryCount; i++)
+            {
+                boolean directory = in.readBoolean();
+                String path = in.readUTF();
+                Entry entry = new Entry(path, directory, in.readLong(), in.readLong(), in.readInt());
+                if (entry.offset() < 0 || entry.length() < 0 || entry.offset() > archiveSize
+                        || entry.length() > archiveSize - entry.offset())
+                    throw new IOException("The archive entry " + path + " does not fit the archive");
+
+                entries.add(entry);
+            }
+
+            // Verify that the archive is complete and that every file's contents match its checksum
+            long dataStart = writeHeader(fingerprint, entries).length;
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            long dataLength = 0;
+            for (Entry entry : entries)
+            {
+                if (entry.directory()) continue;
+
+                CRC32 checksum = new CRC32();
+                long position = dataStart + entry.offset();
+                long end = position + entry.length();
+                while (position < end)
+                {
+                    buffer.clear().limit((int) Math.min(BUFFER_SIZE, end - position));
+                    int read = archiveChannel.read(buffer, position);
+                    if (read == -1)
+                        throw new IOException("The archive is truncated");
+
+                    checksum.update(buffer.flip());
+                    position += read;
+                }
+
+                if ((int) checksum.getValue() != entry.checksum())
+                    throw new IOException("The checksum of " + entry.path() + " does not match its contents");
+
+                dataLength += entry.length();
+            }
+
+            if (archiveSize != dataStart + dataLength)
+                throw new IOException("The archive's size does not match its header");
+
+            return new TemplateArchive(archivePath, fingerprint, List.copyOf(entries), dataStart, System.currentTimeMillis());
+        }
+        catch (IOException ex)
+        {
+            MCMG_NetworkHandler.getLogger().warn("Could not read the template archive at {}; it will be rebuilt: {}", archivePath, ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @param templatePath The path to a template folder
+     * @param path A path within the template folder
+     * @return The path relative to the template folder, using "/" separators
+     */
+    private static String toEntryPath(Path templatePath, Path path)
+    {
+        StringBuilder entryPath = new StringBuilder();
+        for (Path name : templatePath.relativize(path))
+        {
+            if (!entryPath.isEmpty())
+                entryPath.append('/');
+            entryPath.append(name);
+        }
+
+        return entryPath.toString();
+    }
+
+    /**
+     * @param target The absolute, normalized directory a template is being unpacked into
+     * @param entry An entry of the template's archive
+     * @return The path the entry is unpacked to
+     * @throws IOException If the entry would be unpacked outside of the target directory
+     */
+    private static Path resolveEntry(Path target, Entry entry) throws IOException
+    {
+        Path resolved = target.resolve(entry.path()).normalize();
+        if (!resolved.startsWith(target))
+            throw new IOException("The template archive entry " + entry.path() + " is outside of its template!");
+
+        return resolved;
+    }
+}
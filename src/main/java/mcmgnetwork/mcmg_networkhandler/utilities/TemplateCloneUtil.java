@@ -0,0 +1,187 @@
+package mcmgnetwork.mcmg_networkhandler.utilities;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Description: <p>
+ *  A utility class holding static data and functions that clone server template folders into new server instance
+ *  folders. Files are cloned in parallel. In "link" clone mode, files that server instances only ever read (jars and
+ *  library files) are hard linked to the template instead of copied, so only files that each instance writes to
+ *  (worlds, configs, etc.) cost disk I/O; if a file cannot be hard linked (e.g. the template is on another file
+ *  system), it is copied instead. In "archive" clone mode, templates are unpacked from a pre-packed archive (see
+ *  TemplateArchiveUtil).
+ *
+ *  <p>Author(s): Miles Bovero
+ *  <p>Date Created: 10/17/26
+ */
+public class TemplateCloneUtil
+{
+
+    /**
+     * The clone mode in which every template file is fully copied
+     */
+    public static final String COPY_MODE = "copy";
+
+    /**
+     * The clone mode in which read-only template files are hard linked rather than copied
+     */
+    public static final String LINK_MODE = "link";
+
+    /**
+     * The clone mode in which templates are unpacked from a pre-packed, checksummed archive
+     */
+    public static final String ARCHIVE_MODE = "archive";
+
+    /**
+     * Names of template subdirectories whose contents are only ever read by server instances
+     */
+    private static final Set<String> readOnlyDirectories = Set.of("libraries", "versions", "cache");
+
+    /**
+     * A file operation that may fail with an I/O error
+     */
+    @FunctionalInterface
+    interface FileTask
+    {
+        void run() throws IOException;
+    }
+
+    /**
+     * Copies and links template files in parallel
+     */
+    private static final ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable ->
+    {
+        Thread thread = new Thread(runnable, "MCMG-template-clone");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Clones all files and directories from the source template directory into the target directory, according to
+     * the configured template clone mode.
+     * @param source The path to the template directory to clone
+     * @param target The path to the directory where the template will be cloned
+     * @throws IOException If an I/O error occurs during the cloning process
+     */
+    public static void cloneTemplate(Path source, Path target) throws IOException
+    { cloneTemplate(source, target, ConfigUtil.getTemplateCloneMode()); }
+
+    /**
+     * Clones all files and directories from the source template directory into the target directory, according to
+     * the provided template clone mode.
+     * @param source The path to the template directory to clone
+     * @param target The path to the directory where the template will be cloned
+     * @param cloneMode The template clone mode (COPY_MODE, LINK_MODE, or ARCHIVE_MODE)
+     * @throws IOException If an I/O error occurs during the cloning process
+     */
+    static void cloneTemplate(Path source, Path target, String cloneMode) throws IOException
+    {
+        // In archive mode, the template is unpacked from its pre-packed archive instead of walked file by file
+        if (cloneMode.equals(ARCHIVE_MODE))
+        {
+            TemplateArchiveUtil.extractTemplate(source, target);
+            return;
+        }
+
+        boolean linkReadOnlyFiles = cloneMode.equals(LINK_MODE);
+
+        // Create the directory structure up front, collecting the files to clone along the way
+        List<Path> files = new ArrayList<>();
+        Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(target.resolve(source.relativize(dir)));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                files.add(source.relativize(file));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        // Clone every file in parallel
+        List<FileTask> fileClones = new ArrayList<>(files.size());
+        for (Path file : files)
+            fileClones.add(() -> cloneFile(source.resolve(file), target.resolve(file), linkReadOnlyFiles && isReadOnly(file)));
+
+        runInParallel(fileClones);
+    }
+
+    /**
+     * Runs the provided file tasks in parallel and waits for all of them to finish.
+     * @param tasks The file tasks to run
+     * @throws IOException If any of the tasks failed with an I/O error
+     */
+    static void runInParallel(List<FileTask> tasks) throws IOException
+    {
+        List<CompletableFuture<Void>> results = new ArrayList<>(tasks.size());
+        for (FileTask task : tasks)
+            results.add(CompletableFuture.runAsync(() ->
+            {
+                try { task.run(); }
+                catch (IOException ex) { throw new UncheckedIOException(ex); }
+            }, executor));
+
+        try { CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).join(); }
+        catch (CompletionException ex)
+        {
+            if (ex.getCause() instanceof UncheckedIOException ioException)
+                throw ioException.getCause();
+            throw new IOException(ex.getCause());
+        }
+    }
+
+    /**
+     * Stops the clone threads, interrupting any clone in progress.
+     */
+    public static void shutdown()
+    { executor.shutdownNow(); }
+
+    /**
+     * Clones a single template file, hard linking it if requested and possible, and copying it otherwise.
+     * @param source The template file to clone
+     * @param target The path of the cloned file
+     * @param link Whether or not to attempt to hard link the file
+     * @throws IOException If an I/O error occurs while copying the file
+     */
+    private static void cloneFile(Path source, Path target, boolean link) throws IOException
+    {
+        if (link)
+        {
+            try
+            {
+                Files.deleteIfExists(target);
+                Files.createLink(target, source);
+                return;
+            }
+            catch (IOException | UnsupportedOperationException ex)
+            {
+                // Hard links are unsupported here (e.g. across file systems); fall back to copying
+            }
+        }
+
+        Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @param file A template file's path, relative to the template directory
+     * @return Whether or not server instances only ever read the file, so that it may be shared with the template
+     */
+    private static boolean isReadOnly(Path file)
+    {
+        return file.getFileName().toString().endsWith(".jar")
+                || (file.getNameCount() > 1 && readOnlyDirectories.contains(file.getName(0).toString()));
+    }
+}
@@ -0,0 +1,325 @@
+package mcmgnetwork.mcmg_networkhandler.protocols;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Description: <p>
+ *  Round-trips MCMG channel plugin messages through PluginMessageWriter and PluginMessageReader, covering the encoding
+ *  of each field type, one full message of every opcode, and the rejection of malformed messages.
+ *
+ *  <p>Author(s): Miles Bovero
+ *  <p>Date Created: 10/17/26
+ */
+class PluginMessageCodecTest
+{
+    @Test
+    void roundTripsVarInts()
+    {
+        int[] values = {0, 1, 127, 128, 255, 16383, 16384, Integer.MAX_VALUE, -1, Integer.MIN_VALUE};
+        PluginMessageWriter out = new PluginMessageWriter(MessageTypes.LOBBY_TRANSFER_REQUEST);
+        for (int value : values)
+            out.writeVarInt(value);
+
+        PluginMessageReader in = new PluginMessageReader(out.toByteArray());
+        assertEquals(MessageTypes.LOBBY_TRANSFER_REQUEST, in.readHeader());
+        for (int value : values)
+            assertEquals(value, in.readVarInt());
+        assertEndOfMessage(in);
+    }
+
+    @Test
+    void encodesVarIntsInSevenBitGroups()
+    {
+        assertArrayEquals(new byte[] {MessageTypes.PROTOCOL_VERSION, 0, 0}, header().writeVarInt(0).toByteArray());
+        assertArrayEquals(new byte[] {MessageTypes.PROTOCOL_VERSION, 0, 0x7F}, header().writeVarInt(127).toByteArray());
+        assertArrayEquals(new byte[] {MessageTypes.PROTOCOL_VERSION, 0, (byte) 0x80, 0x01},
+                header().writeVarInt(128).toByteArray());
+        assertArrayEquals(new byte[] {MessageTypes.PROTOCOL_VERSION, 0, -1, -1, -1, -1, 0x07},
+                header().writeVarInt(Integer.MAX_VALUE).toByteArray());
+        assertArrayEquals(new byte[] {MessageTypes.PROTOCOL_VERSION, 0, -1, -1, -1, -1, 0x0F},
+                header().writeVarInt(-1).toByteArray());
+    }
+
+    @Test
+    void roundTripsStrings()
+    {
+        String[] values = {"", "lobby1", "Grüße", "ロビー", "🎮 player", "x".repeat(300)};
+        PluginMessageWriter out = header();
+        for (String value : values)
+            out.writeString(value);
+
+        PluginMessageReader in = new PluginMessageReader(out.toByteArray());
+        in.readHeader();
+        for (String value : values)
+            assertEquals(value, in.readString());
+        assertEndOfMessage(in);
+    }
+
+    @Test
+    void encodesStringLengthInBytes()
+    {
+        // "é" is one character but two UTF-8 bytes
+        assertArrayEquals(new byte[] {MessageTypes.PROTOCOL_VERSION, 0, 2, (byte) 0xC3, (byte) 0xA9},
+                header().writeString("é").toByteArray());
+    }
+
+    @Test
+    void roundTripsEveryServerStatus()
+    {
+        PluginMessageWriter out = header();
+        for (ServerStatuses status : ServerStatuses.values())
+            out.writeStatus(status);
+
+        PluginMessageReader in = new PluginMessageReader(out.toByteArray());
+        in.readHeader();
+        for (ServerStatuses status : ServerStatuses.values())
+        {
+            assertEquals(status, ServerStatuses.fromId(status.getId()));
+            assertEquals(status, in.readStatus());
+        }
+        assertEndOfMessage(in);
+    }
+
+    @Test
+    void rejectsUnknownServerStatuses()
+    {
+        assertThrows(IllegalArgumentException.class,
+                () -> readerAfterHeader(header().writeVarInt(ServerStatuses.values().length)).readStatus());
+        assertThrows(IllegalArgumentException.class, () -> readerAfterHeader(header().writeVarInt(-1)).readStatus());
+    }
+
+    @Test
+    void roundTripsLobbyTransferRequest()
+    {
+        byte[] message = new PluginMessageWriter(MessageTypes.LOBBY_TRANSFER_REQUEST)
+                .writeVarInt(42)
+                .writeString("Notch")
+                .writeString("lobby")
+                .toByteArray();
+
+        PluginMessageReader in = new PluginMessageReader(message);
+        assertEquals(MessageTypes.LOBBY_TRANSFER_REQUEST, in.readHeader());
+        assertEquals(42, in.readVarInt());
+        assertEquals("Notch", in.readString());
+        assertEquals("lobby", in.readString());
+        assertEndOfMessage(in);
+    }
+
+    @Test
+    void roundTripsLobbyTransferResponse()
+    {
+        byte[] message = new PluginMessageWriter(MessageTypes.LOBBY_TRANSFER_RESPONSE)
+                .writeVarInt(42)
+                .writeStatus(ServerStatuses.TRANSFERABLE)
+                .writeString("Notch")
+                .writeString("lobby3")
+                .toByteArray();
+
+        PluginMessageReader in = new PluginMessageReader(message);
+        assertEquals(MessageTypes.LOBBY_TRANSFER_RESPONSE, in.readHeader());
+        assertEquals(42, in.readVarInt());
+        assertEquals(ServerStatuses.TRANSFERABLE, in.readStatus());
+        assertEquals("Notch", in.readString());
+        assertEquals("lobby3", in.readString());
+        assertEndOfMessage(in);
+    }
+
+    @Test
+    void roundTripsLobbyPreparationRequest()
+    {
+        byte[] message = new PluginMessageWriter(MessageTypes.LOBBY_PREPARATION_REQUEST)
+                .writeString("lobby")
+                .toByteArray();
+
+        PluginMessageReader in = new PluginMessageReader(message);
+        assertEquals(MessageTypes.LOBBY_PREPARATION_REQUEST, in.readHeader());
+        assertEquals("lobby", in.readString());
+        assertEndOfMessage(in);
+    }
+
+    @Test
+    void roundTripsLobbyTransferBatchRequest()
+    {
+        List<List<String>> parties = List.of(List.of("Notch"), List.of("jeb_", "Dinnerbone", "Grumm"), List.of());
+        PluginMessageWriter out = new PluginMessageWriter(MessageTypes.LOBBY_TRANSFER_BATCH_REQUEST)
+                .writeVarInt(7)
+                .writeString("lobby")
+                .writeVarInt(parties.size());
+        for (List<String> party : parties)
+        {
+            out.writeVarInt(party.size());
+            for (String member : party)
+                out.writeString(member);
+        }
+
+        PluginMessageReader in = new PluginMessageReader(out.toByteArray());
+        assertEquals(MessageTypes.LOBBY_TRANSFER_BATCH_REQUEST, in.readHeader());
+        assertEquals(7, in.readVarInt());
+        assertEquals("lobby", in.readString());
+        assertEquals(parties.size(), in.readCount());
+        for (List<String> party : parties)
+        {
+            assertEquals(party.size(), in.readCount());
+            for (String member : party)
+                assertEquals(member, in.readString());
+        }
+        assertEndOfMessage(in);
+    }
+
+    @Test
+    void roundTripsLobbyTransferBatchResponse()
+    {
+        List<String> serverNames = List.of("lobby1", "lobby1", "lobby2");
+        PluginMessageWriter out = new PluginMessageWriter(MessageTypes.LOBBY_TRANSFER_BATCH_RESPONSE)
+                .writeVarInt(7)
+                .writeStatus(ServerStatuses.TRANSFERABLE)
+                .writeVarInt(serverNames.size());
+        for (String serverName : serverNames)
+            out.writeString(serverName);
+
+        PluginMessageReader in = new PluginMessageReader(out.toByteArray());
+        assertEquals(MessageTypes.LOBBY_TRANSFER_BATCH_RESPONSE, in.readHeader());
+        assertEquals(7, in.readVarInt());
+        assertEquals(ServerStatuses.TRANSFERABLE, in.readStatus());
+        assertEquals(serverNames.size(), in.readCount());
+        for (String serverName : serverNames)
+            assertEquals(serverName, in.readString());
+        assertEndOfMessage(in);
+    }
+
+    @Test
+    void roundTripsServerHeartbeat()
+    {
+        byte[] message = new PluginMessageWriter(MessageTypes.SERVER_HEARTBEAT)
+                .writeVarInt(12)
+                .writeVarInt(50)
+                .writeVarInt(1987)
+                .writeVarInt(1)
+                .toByteArray();
+
+        PluginMessageReader in = new PluginMessageReader(message);
+        assertEquals(MessageTypes.SERVER_HEARTBEAT, in.readHeader());
+        assertEquals(12, in.readVarInt());
+        assertEquals(50, in.readVarInt());
+        assertEquals(1987, in.readVarInt());
+        assertEquals(1, in.readVarInt());
+        assertEndOfMessage(in);
+    }
+
+    @Test
+    void ignoresOtherProtocolVersions()
+    {
+        byte[] message = new PluginMessageWriter(MessageTypes.SERVER_HEARTBEAT).writeVarInt(12).toByteArray();
+        message[0] = MessageTypes.PROTOCOL_VERSION - 1;
+        assertEquals(-1, new PluginMessageReader(message).readHeader());
+
+        message[0] = MessageTypes.PROTOCOL_VERSION + 1;
+        assertEquals(-1, new PluginMessageReader(message).readHeader());
+    }
+
+    @Test
+    void rejectsTruncatedMessages()
+    {
+        assertThrows(IllegalArgumentException.class, () -> new PluginMessageReader(new byte[0]).readHeader());
+        assertThrows(IllegalArgumentException.class,
+                () -> new PluginMessageReader(new byte[] {MessageTypes.PROTOCOL_VERSION}).readHeader());
+
+        // A varint whose continuation bit is set on its last byte
+        byte[] varInt = header().writeVarInt(Integer.MAX_VALUE).toByteArray();
+        assertThrows(IllegalArgumentException.class, () -> readerAfterHeader(varInt, varInt.length - 1).readVarInt());
+
+        // A string whose bytes are cut off
+        byte[] string = header().writeString("lobby").toByteArray();
+        assertThrows(IllegalArgumentException.class, () -> readerAfterHeader(string, string.length - 1).readString());
+
+        // A message whose last field is missing entirely
+        byte[] response = new PluginMessageWriter(MessageTypes.LOBBY_TRANSFER_RESPONSE)
+                .writeVarInt(42)
+                .writeStatus(ServerStatuses.FULL)
+                .writeString("Notch")
+                .toByteArray();
+        PluginMessageReader in = new PluginMessageReader(response);
+        in.readHeader();
+        in.readVarInt();
+        in.readStatus();
+        in.readString();
+        assertThrows(IllegalArgumentException.class, in::readString);
+    }
+
+    @Test
+    void rejectsOverlongVarInts()
+    {
+        byte[] message = {MessageTypes.PROTOCOL_VERSION, 0, -1, -1, -1, -1, -1, 0x01};
+        PluginMessageReader in = new PluginMessageReader(message);
+        in.readHeader();
+        assertThrows(IllegalArgumentException.class, in::readVarInt);
+    }
+
+    @Test
+    void rejectsOversizedCounts()
+    {
+        // A count larger than the number of bytes left
+        PluginMessageWriter out = header().writeVarInt(3).writeString("a");
+        assertThrows(IllegalArgumentException.class, () -> readerAfterHeader(out).readCount());
+
+        // A huge count, as a malicious server might send to force a large allocation
+        assertThrows(IllegalArgumentException.class,
+                () -> readerAfterHeader(header().writeVarInt(Integer.MAX_VALUE)).readCount());
+        assertThrows(IllegalArgumentException.class, () -> readerAfterHeader(header().writeVarInt(-1)).readCount());
+
+        // The same for a string's length
+        assertThrows(IllegalArgumentException.class,
+                () -> readerAfterHeader(header().writeVarInt(Integer.MAX_VALUE)).readString());
+        assertThrows(IllegalArgumentException.class, () -> readerAfterHeader(header().writeVarInt(-1)).readString());
+    }
+
+    @Test
+    void acceptsCountsThatFitTheRemainingMessage()
+    {
+        PluginMessageReader in = readerAfterHeader(header().writeVarInt(2).writeString("").writeString(""));
+        assertEquals(2, in.readCount());
+        assertEquals("", in.readString());
+        assertEquals("", in.readString());
+        assertEndOfMessage(in);
+    }
+
+    /**
+     * @return A writer for a new message with an arbitrary opcode
+     */
+    private static PluginMessageWriter header()
+    { return new PluginMessageWriter(MessageTypes.LOBBY_TRANSFER_REQUEST); }
+
+    /**
+     * @param out A writer whose message will be read
+     * @return A reader positioned after the message's header
+     */
+    private static PluginMessageReader readerAfterHeader(PluginMessageWriter out)
+    {
+        byte[] message = out.toByteArray();
+        return readerAfterHeader(message, message.length);
+    }
+
+    /**
+     * @param message An encoded message
+     * @param length The number of the message's bytes to read (to simulate truncated messages)
+     * @return A reader positioned after the message's header
+     */
+    private static PluginMessageReader readerAfterHeader(byte[] message, int length)
+    {
+        PluginMessageReader in = new PluginMessageReader(Arrays.copyOf(message, length));
+        in.readHeader();
+        return in;
+    }
+
+    /**
+     * Asserts that every byte of the provided reader's message has been read.
+     * @param in A reader
+     */
+    private static void assertEndOfMessage(PluginMessageReader in)
+    { assertThrows(IllegalArgumentException.class, in::readVarInt); }
+}
@@ -0,0 +1,121 @@
+package mcmgnetwork.mcmg_networkhandler.utilities;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Description: <p>
+ *  Tests that routine server information updates happen in place: updating a ServerInfoPackage replaces its player
+ *  counts and TPS, and a heartbeat of an already active server does not replace the active server snapshot.
+ *  <p>
+ *  The benchmark additionally measures the allocations of both with the JVM's per-thread allocation counter, and
+ *  requires that updating a ServerInfoPackage allocates nothing at all; it is tagged "benchmark" and only runs in the
+ *  benchmark profile.
+ *
+ *  <p>Author(s): Miles Bovero
+ *  <p>Date Created: 10/17/26
+ */
+class ServerInfoPackageAllocationTest
+{
+    private static final int WARMUP_UPDATES = 200_000;
+    private static final int MEASURED_UPDATES = 1_000_000;
+
+    @Test
+    void updatesReplacePlayerCountsAndTps()
+    {
+        ServerInfoPackage serverInfo = new ServerInfoPackage("allocation1");
+        assertEquals(0, serverInfo.getOnlinePlayerCount());
+        assertEquals(-1.0, serverInfo.getTps());
+
+        serverInfo.update(12, 50, 19.5);
+        assertEquals(12, serverInfo.getOnlinePlayerCount());
+        assertEquals(50, serverInfo.getMaximumPlayerCount());
+        assertEquals(19.5, serverInfo.getTps());
+
+        serverInfo.update(0, 100, -1);
+        assertEquals(0, serverInfo.getOnlinePlayerCount());
+        assertEquals(100, serverInfo.getMaximumPlayerCount());
+        assertEquals(-1.0, serverInfo.getTps());
+    }
+
+    @Test
+    void heartbeatsOfActiveServersDoNotReplaceTheSnapshot()
+    {
+        String serverName = "allocation2";
+        ActiveServerUtil.recordHeartbeat(serverName, 0, 50, 20, InstanceState.READY);
+
+        try
+        {
+            ServerInfoSnapshot snapshot = ActiveServerUtil.getSnapshot();
+            for (int i=1; i<=100; i++)
+                ActiveServerUtil.recordHeartbeat(serverName, i % 50, 50, 20, InstanceState.READY);
+
+            assertSame(snapshot, ActiveServerUtil.getSnapshot());
+            assertEquals(100 % 50, snapshot.get(serverName).getOnlinePlayerCount());
+        }
+        finally
+        {
+            ActiveServerUtil.removeServer(serverName);
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void benchmarkUpdateAllocations()
+    {
+        com.sun.management.ThreadMXBean threadBean = allocationCounter();
+        long threadId = Thread.currentThread().getId();
+
+        // Updating a ServerInfoPackage in place
+        ServerInfoPackage serverInfo = new ServerInfoPackage("allocation3");
+        for (int i=0; i<WARMUP_UPDATES; i++)
+            serverInfo.update(i % 50, 50, 19.5);
+
+        long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i=0; i<MEASURED_UPDATES; i++)
+            serverInfo.update(i % 50, 50, 19.5);
+        long updateBytes = threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        // A heartbeat of an already active server
+        String serverName = "allocation4";
+        ActiveServerUtil.recordHeartbeat(serverName, 0, 50, 20, InstanceState.READY);
+        long heartbeatBytes;
+        try
+        {
+            for (int i=0; i<WARMUP_UPDATES; i++)
+                ActiveServerUtil.recordHeartbeat(serverName, i % 50, 50, 20, InstanceState.READY);
+
+            allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+            for (int i=0; i<MEASURED_UPDATES; i++)
+                ActiveServerUtil.recordHeartbeat(serverName, i % 50, 50, 20, InstanceState.READY);
+            heartbeatBytes = threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        }
+        finally
+        {
+            ActiveServerUtil.removeServer(serverName);
+        }
+
+        System.out.printf("Allocations: %.3f bytes per ServerInfoPackage.update, %.1f bytes per active server heartbeat%n",
+                (double) updateBytes / MEASURED_UPDATES, (double) heartbeatBytes / MEASURED_UPDATES);
+
+        // Allow for the allocation counter's own bookkeeping, which is far less than one byte per update
+        assertTrue(updateBytes < MEASURED_UPDATES, updateBytes + " bytes allocated by " + MEASURED_UPDATES + " updates");
+    }
+
+    /**
+     * @return The JVM's thread bean, if it can count per-thread allocations (otherwise the benchmark is skipped)
+     */
+    private static com.sun.management.ThreadMXBean allocationCounter()
+    {
+        Assumptions.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        return threadBean;
+    }
+}
@@ -0,0 +1,174 @@
+package mcmgnetwork.mcmg_networkhandler.utilities;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Description: <p>
+ *  Contention tests of the active server snapshot: reader threads repeatedly select a transfer target with
+ *  findTransferableServerName while writer threads keep adding and removing servers of the same type (each of which
+ *  replaces the snapshot through ServerInfoSnapshot.with/without). Every selection is checked against the one server
+ *  that is always the correct target, so a reader that ever observed a partially updated snapshot fails the test.
+ *  <p>
+ *  The benchmark additionally measures reader throughput with and without writers; it is tagged "benchmark" and only
+ *  runs in the benchmark profile.
+ *
+ *  <p>Author(s): Miles Bovero
+ *  <p>Date Created: 10/17/26
+ */
+class ServerInfoSnapshotContentionTest
+{
+    private static final String SERVER_TYPE = "contention";
+    private static final int STABLE_SERVER_COUNT = 20;
+    private static final int CHURN_SERVER_COUNT = 20;
+    private static final int READER_COUNT = Math.max(2, Runtime.getRuntime().availableProcessors() - 2);
+    private static final int WRITER_COUNT = 2;
+
+    /**
+     * The number of times each writer adds and removes its servers in the correctness test
+     */
+    private static final int CHURN_ROUNDS = 50;
+
+    /**
+     * How long the benchmark measures reader throughput for, with and without writers
+     */
+    private static final long MEASUREMENT_MILLIS = 1000;
+
+    /**
+     * The fullest server with room; always the correct transfer target, since churned servers are always emptier
+     */
+    private static final String TARGET_SERVER_NAME = SERVER_TYPE + 1;
+
+    /**
+     * The outcome of running readers (and writers) against the snapshot
+     * @param readCount The readers' combined number of target selections
+     * @param writeCount The writers' combined number of snapshot replacements
+     * @param elapsedSeconds How long the readers ran for
+     */
+    private record ChurnResult(long readCount, long writeCount, double elapsedSeconds) {}
+
+    @BeforeEach
+    void addStableServers()
+    {
+        for (int i=1; i<=STABLE_SERVER_COUNT; i++)
+            ActiveServerUtil.recordHeartbeat(SERVER_TYPE + i, i == 1 ? 40 : 10, 50, -1, InstanceState.READY);
+    }
+
+    @AfterEach
+    void removeServers()
+    {
+        for (int i=1; i<=STABLE_SERVER_COUNT + CHURN_SERVER_COUNT * WRITER_COUNT; i++)
+            ActiveServerUtil.removeServer(SERVER_TYPE + i);
+
+        assertTrue(ActiveServerUtil.getSnapshot().getServers(SERVER_TYPE).isEmpty());
+    }
+
+    @Test
+    void readersAlwaysSeeConsistentSnapshotsWhileWritersChurn() throws InterruptedException
+    {
+        ChurnResult result = churn(WRITER_COUNT, CHURN_ROUNDS, Long.MAX_VALUE);
+        assertEquals((long) WRITER_COUNT * CHURN_ROUNDS * CHURN_SERVER_COUNT * 2, result.writeCount());
+    }
+
+    @Test
+    @Tag("benchmark")
+    void benchmarkReaderThroughputUnderContention() throws InterruptedException
+    {
+        ChurnResult uncontended = churn(0, 0, MEASUREMENT_MILLIS);
+        ChurnResult contended = churn(WRITER_COUNT, Integer.MAX_VALUE, MEASUREMENT_MILLIS);
+
+        double uncontendedRate = uncontended.readCount() / uncontended.elapsedSeconds();
+        double contendedRate = contended.readCount() / contended.elapsedSeconds();
+        System.out.printf("findTransferableServerName with %d readers: %.0f ops/s uncontended, %.0f ops/s with %d writers (%.0f%%); "
+                        + "the writers replaced the snapshot %.0f times/s%n", READER_COUNT, uncontendedRate, contendedRate,
+                WRITER_COUNT, 100 * contendedRate / uncontendedRate, contended.writeCount() / contended.elapsedSeconds());
+    }
+
+    /**
+     * Runs the reader threads alongside the provided number of writer threads, until every writer has finished its
+     * rounds or the provided time has elapsed, whichever comes first; with no writers, readers run for the provided
+     * time. Fails if any reader selected a target other than TARGET_SERVER_NAME.
+     * @param writerCount The number of writer threads to run alongside the readers
+     * @param writerRounds The number of times each writer adds and removes its servers
+     * @param maxMillis The longest time to run for, in milliseconds
+     * @return The readers' and writers' combined work
+     */
+    private static ChurnResult churn(int writerCount, int writerRounds, long maxMillis) throws InterruptedException
+    {
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong readCount = new AtomicLong();
+        AtomicLong writeCount = new AtomicLong();
+        AtomicReference<String> inconsistency = new AtomicReference<>();
+        CountDownLatch started = new CountDownLatch(READER_COUNT + writerCount);
+        CountDownLatch writersDone = new CountDownLatch(writerCount);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int r=0; r<READER_COUNT; r++)
+        {
+            threads.add(new Thread(() ->
+            {
+                started.countDown();
+                long reads = 0;
+                do
+                {
+                    String serverName = ActiveServerUtil.findTransferableServerName(SERVER_TYPE);
+                    if (!serverName.equals(TARGET_SERVER_NAME))
+                        inconsistency.compareAndSet(null, "Selected \"" + serverName + "\" instead of " + TARGET_SERVER_NAME);
+                    reads++;
+                } while (running.get());
+                readCount.addAndGet(reads);
+            }));
+        }
+
+        for (int w=0; w<writerCount; w++)
+        {
+            // Each writer churns its own range of instance numbers above the stable servers
+            int firstInstanceNumber = STABLE_SERVER_COUNT + 1 + w * CHURN_SERVER_COUNT;
+            threads.add(new Thread(() ->
+            {
+                started.countDown();
+                long writes = 0;
+                for (int round=0; round<writerRounds && running.get(); round++)
+                {
+                    for (int i=0; i<CHURN_SERVER_COUNT; i++)
+                        ActiveServerUtil.recordHeartbeat(SERVER_TYPE + (firstInstanceNumber + i), 0, 50, -1, InstanceState.READY);
+                    for (int i=0; i<CHURN_SERVER_COUNT; i++)
+                        ActiveServerUtil.removeServer(SERVER_TYPE + (firstInstanceNumber + i));
+                    writes += 2 * CHURN_SERVER_COUNT;
+                }
+                writeCount.addAndGet(writes);
+                writersDone.countDown();
+            }));
+        }
+
+        for (Thread thread : threads)
+            thread.start();
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        long startTime = System.nanoTime();
+        if (writerCount > 0)
+            writersDone.await(maxMillis, TimeUnit.MILLISECONDS);
+        else
+            Thread.sleep(maxMillis);
+        running.set(false);
+        for (Thread thread : threads)
+            thread.join();
+        double elapsedSeconds = (System.nanoTime() - startTime) / 1e9;
+
+        assertNull(inconsistency.get());
+        assertTrue(readCount.get() > 0);
+        return new ChurnResult(readCount.get(), writeCount.get(), elapsedSeconds);
+    }
+}
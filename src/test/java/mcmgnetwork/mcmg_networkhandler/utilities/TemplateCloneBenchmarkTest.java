@@ -0,0 +1,200 @@
+package mcmgnetwork.mcmg_networkhandler.utilities;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Description: <p>
+ *  Tests of the "copy" and "link" template clone modes on a template shaped like a real Paper server (a server jar, a
+ *  libraries folder of jars, plugin jars, a world of region files, and configs). Every clone is checked to match the
+ *  template, and link mode is checked to share read-only files with the template where the file system supports hard
+ *  links.
+ *  <p>
+ *  The benchmark additionally clones a full-size (about 60 MB) template several times in each mode and prints the
+ *  median clone time of each mode; it is tagged "benchmark" and only runs in the benchmark profile.
+ *
+ *  <p>Author(s): Miles Bovero
+ *  <p>Date Created: 10/17/26
+ */
+class TemplateCloneBenchmarkTest
+{
+    private static final int WARMUP_CLONES = 1;
+    private static final int MEASURED_CLONES = 5;
+
+    @Test
+    void linkModeClonesMatchTheTemplateAndShareReadOnlyFiles() throws IOException
+    {
+        Path directory = Files.createTempDirectory("template-clone-test");
+        try
+        {
+            Path template = directory.resolve("template");
+            createTemplate(template, 256 * 1024, 3, 2, 2);
+
+            Path copy = directory.resolve("copy");
+            Path link = directory.resolve("link");
+            TemplateCloneUtil.cloneTemplate(template, copy, TemplateCloneUtil.COPY_MODE);
+            TemplateCloneUtil.cloneTemplate(template, link, TemplateCloneUtil.LINK_MODE);
+            assertSameContents(template, copy);
+            assertSameContents(template, link);
+
+            // Instances must never share the files they write to
+            assertFalse(Files.isSameFile(template.resolve("world/region/r.0.0.mca"), link.resolve("world/region/r.0.0.mca")));
+            assertFalse(Files.isSameFile(template.resolve("server.properties"), link.resolve("server.properties")));
+            assertFalse(Files.isSameFile(template.resolve("paper.jar"), copy.resolve("paper.jar")));
+
+            // Read-only files are shared, unless this file system cannot hard link (in which case they were copied)
+            if (supportsHardLinks(directory))
+            {
+                assertTrue(Files.isSameFile(template.resolve("paper.jar"), link.resolve("paper.jar")));
+                assertTrue(Files.isSameFile(template.resolve("libraries/library0.jar"), link.resolve("libraries/library0.jar")));
+                assertTrue(Files.isSameFile(template.resolve("plugins/plugin0.jar"), link.resolve("plugins/plugin0.jar")));
+            }
+        }
+        finally
+        {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void benchmarkCopyAndLinkCloneTimes() throws IOException
+    {
+        Path directory = Files.createTempDirectory("template-clone-benchmark");
+        try
+        {
+            Path template = directory.resolve("template");
+            createTemplate(template, 20 * 1024 * 1024, 120, 10, 25);
+
+            long copyNanos = medianCloneNanos(template, directory.resolve("copy"), TemplateCloneUtil.COPY_MODE);
+            long linkNanos = medianCloneNanos(template, directory.resolve("link"), TemplateCloneUtil.LINK_MODE);
+            System.out.printf("Median template clone time: %.1f ms copying, %.1f ms linking (%.0f%%)%n",
+                    copyNanos / 1e6, linkNanos / 1e6, 100.0 * linkNanos / copyNanos);
+        }
+        finally
+        {
+            deleteRecursively(directory);
+        }
+    }
+
+    /**
+     * Clones the template WARMUP_CLONES + MEASURED_CLONES times into numbered target directories.
+     * @param template The template directory to clone
+     * @param targetPrefix The path prefix of the target directories; each clone's number is appended to it
+     * @param cloneMode The template clone mode to clone in
+     * @return The median time a measured clone took, in nanoseconds
+     */
+    private static long medianCloneNanos(Path template, Path targetPrefix, String cloneMode) throws IOException
+    {
+        long[] cloneNanos = new long[MEASURED_CLONES];
+        for (int i=0; i<WARMUP_CLONES + MEASURED_CLONES; i++)
+        {
+            Path target = Path.of(targetPrefix.toString() + i);
+            long startTime = System.nanoTime();
+            TemplateCloneUtil.cloneTemplate(template, target, cloneMode);
+            if (i >= WARMUP_CLONES)
+                cloneNanos[i - WARMUP_CLONES] = System.nanoTime() - startTime;
+        }
+
+        Arrays.sort(cloneNanos);
+        return cloneNanos[MEASURED_CLONES / 2];
+    }
+
+    /**
+     * Generates a template shaped like a Paper server's; the full-size template (a 20 MB server jar, 120 libraries, 10
+     * plugins and 25 region files) is about 60 MB across roughly 160 files.
+     * @param template The directory to generate the template in
+     * @param serverJarSize The size of the server jar, in bytes
+     * @param libraryCount The number of library jars
+     * @param pluginCount The number of plugin jars
+     * @param regionCount The number of world region files
+     */
+    private static void createTemplate(Path template, int serverJarSize, int libraryCount, int pluginCount, int regionCount) throws IOException
+    {
+        Random random = new Random(1017);
+        writeFile(template.resolve("paper.jar"), serverJarSize, random);
+        for (int i=0; i<libraryCount; i++)
+            writeFile(template.resolve("libraries/library" + i + ".jar"), 16 * 1024 + random.nextInt(256 * 1024), random);
+        for (int i=0; i<pluginCount; i++)
+            writeFile(template.resolve("plugins/plugin" + i + ".jar"), 64 * 1024 + random.nextInt(512 * 1024), random);
+        for (int i=0; i<regionCount; i++)
+            writeFile(template.resolve("world/region/r." + (i / 5) + "." + (i % 5) + ".mca"), 512 * 1024 + random.nextInt(512 * 1024), random);
+        for (String config : new String[] {"server.properties", "bukkit.yml", "spigot.yml", "config/paper-global.yml", "eula.txt"})
+            writeFile(template.resolve(config), 1024 + random.nextInt(8 * 1024), random);
+    }
+
+    /**
+     * Writes a file of random bytes, creating its parent directories.
+     * @param file The file to write
+     * @param size The number of bytes to write
+     * @param random The source of the file's bytes
+     */
+    private static void writeFile(Path file, int size, Random random) throws IOException
+    {
+        byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        Files.createDirectories(file.getParent());
+        Files.write(file, bytes);
+    }
+
+    /**
+     * Asserts that the clone contains exactly the template's files, with the same contents.
+     * @param template A template directory
+     * @param clone A clone of the template
+     */
+    private static void assertSameContents(Path template, Path clone) throws IOException
+    {
+        try (Stream<Path> templateFiles = Files.walk(template); Stream<Path> cloneFiles = Files.walk(clone))
+        { assertEquals(templateFiles.count(), cloneFiles.count()); }
+
+        try (Stream<Path> templateFiles = Files.walk(template))
+        {
+            for (Path file : (Iterable<Path>) templateFiles.filter(Files::isRegularFile)::iterator)
+            {
+                Path clonedFile = clone.resolve(template.relativize(file));
+                assertEquals(-1L, Files.mismatch(file, clonedFile), clonedFile + " differs from the template");
+            }
+        }
+    }
+
+    /**
+     * @param directory A directory on the file system to check
+     * @return Whether or not the file system supports hard links
+     */
+    private static boolean supportsHardLinks(Path directory) throws IOException
+    {
+        Path file = Files.createFile(directory.resolve("link-check"));
+        try
+        {
+            Files.createLink(directory.resolve("link-check-link"), file);
+            return true;
+        }
+        catch (IOException | UnsupportedOperationException ex)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Deletes the provided directory and everything in it.
+     * @param directory The directory to delete
+     */
+    private static void deleteRecursively(Path directory) throws IOException
+    {
+        try (Stream<Path> files = Files.walk(directory))
+        {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator)
+                Files.delete(file);
+        }
+    }
+}